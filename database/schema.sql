@@ -43,3 +43,32 @@ CREATE TABLE IF NOT EXISTS risk_results (
     timestamp DATETIME DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY(transaction_id) REFERENCES transactions(transaction_id)
 );
+
+-- 5. Indexes for keyset paging / filtering of risk_results (see TransactionQuery.java)
+CREATE INDEX IF NOT EXISTS idx_risk_results_timestamp ON risk_results(timestamp, transaction_id);
+CREATE INDEX IF NOT EXISTS idx_risk_results_level_timestamp ON risk_results(risk_level, timestamp, transaction_id);
+CREATE INDEX IF NOT EXISTS idx_risk_results_level_score ON risk_results(risk_level, risk_score, transaction_id);
+CREATE INDEX IF NOT EXISTS idx_risk_results_score ON risk_results(risk_score, transaction_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_customer ON transactions(customer_id);
+
+-- 6. Incrementally maintained aggregates (see RiskRollups.java; rebuild with `src.RiskRollups rebuild`)
+CREATE TABLE IF NOT EXISTS risk_level_totals (
+    risk_level TEXT PRIMARY KEY,
+    txn_count INTEGER NOT NULL
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS risk_rollups (
+    granularity TEXT NOT NULL, -- 'minute' or 'hour'
+    bucket_start TEXT NOT NULL, -- 'YYYY-MM-DD HH:MM'
+    risk_level TEXT NOT NULL,
+    txn_count INTEGER NOT NULL,
+    amount_sum REAL NOT NULL,
+    max_score REAL NOT NULL,
+    PRIMARY KEY (granularity, bucket_start, risk_level)
+) WITHOUT ROWID;
+
+-- Bumped by every rollup rebuild and rescore swap; a running server polls it (see DatabaseManager.watchRebuilds)
+CREATE TABLE IF NOT EXISTS risk_generation (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    generation INTEGER NOT NULL
+);
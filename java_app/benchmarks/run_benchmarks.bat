@@ -0,0 +1,17 @@
+@echo off
+rem Builds the app and the benchmarks, runs JMH and writes results\<commit>.json.
+rem Extra arguments go to JMH, e.g.: run_benchmarks.bat DataAccess -p rows=1000,100000
+cd /d "%~dp0"
+if not exist "results" mkdir results
+for /f %%i in ('git rev-parse --short HEAD 2^>nul') do set COMMIT=%%i
+if "%COMMIT%"=="" set COMMIT=local
+
+pushd ..
+call mvn -B -q install -DskipTests
+if %errorlevel% neq 0 exit /b %errorlevel%
+popd
+call mvn -B -q package
+if %errorlevel% neq 0 exit /b %errorlevel%
+
+java -Dbench.dataDir=target/bench-data -jar target/benchmarks.jar -rf json -rff "results/%COMMIT%.json" %*
+echo Results written to results\%COMMIT%.json
@@ -0,0 +1,14 @@
+#!/bin/sh
+# Builds the app and the benchmarks, runs JMH and writes results/<commit>.json.
+# Extra arguments go to JMH, e.g.: ./run_benchmarks.sh DataAccess -p rows=1000,100000
+# Compare two runs with any JMH JSON viewer, or diff the "primaryMetric.score" fields.
+set -e
+cd "$(dirname "$0")"
+mkdir -p results
+COMMIT=$(git rev-parse --short HEAD 2>/dev/null || echo local)
+
+(cd .. && mvn -B -q install -DskipTests)
+mvn -B -q package
+
+java -Dbench.dataDir=target/bench-data -jar target/benchmarks.jar -rf json -rff "results/$COMMIT.json" "$@"
+echo "Results written to results/$COMMIT.json"
@@ -0,0 +1,60 @@
+package src;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// DatabaseManager.addMockData (generate, score, bulk insert, notify listeners) against tables of each size.
+// Rows added during an iteration are deleted afterwards so the dataset stays at its nominal size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddMockDataBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public long rows;
+
+    // Same batch the server seeds an empty database with.
+    @Param({ "500" })
+    public int batch;
+
+    private long baseTransactionId;
+    private long baseResultId;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        DatabaseManager.hotCache(); // listeners run as they do in the server
+        baseTransactionId = BenchDatasets.maxTransactionId();
+        baseResultId = BenchDatasets.maxResultId();
+    }
+
+    @TearDown(Level.Iteration)
+    public void trim() throws Exception {
+        BenchDatasets.truncateAfter(baseTransactionId, baseResultId);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchDatasets.checkpoint();
+        DatabaseManager.pool().shutdown();
+    }
+
+    @Benchmark
+    public void addMockData() {
+        DatabaseManager.addMockData(batch);
+    }
+}
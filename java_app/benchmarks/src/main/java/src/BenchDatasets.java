@@ -0,0 +1,68 @@
+package src;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Synthetic datasets for the JMH benchmarks: one SQLite file per row count, generated through the
+// normal bulk ingest path on first use and reused afterwards (10M rows takes a few minutes to build).
+// Each JMH fork is a fresh JVM, so pointing db.path at the file before DatabaseManager opens its pool
+// binds the whole trial to that dataset.
+public class BenchDatasets {
+    static final String DATA_DIR = System.getProperty("bench.dataDir", "target/bench-data");
+
+    // Opens (creating or topping up) the dataset with at least `rows` risk_results rows.
+    public static long open(long rows) throws SQLException {
+        File dir = new File(DATA_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IllegalStateException("Cannot create " + dir.getAbsolutePath());
+        System.setProperty("db.path", new File(dir, "risk-" + rows + ".db").getAbsolutePath());
+
+        DatabaseManager.initializeDatabaseIfEmpty();
+        long have = maxResultId();
+        if (have < rows) {
+            BulkIngestor ingestor = DatabaseManager.newIngestor(2000, 50000);
+            while (have < rows) {
+                int chunk = (int) Math.min(500_000, rows - have);
+                have += ingestor.ingest(DatabaseManager.mockRecords(chunk));
+                System.out.println("  populated " + have + " / " + rows);
+            }
+            checkpoint();
+        }
+        return have;
+    }
+
+    static long maxResultId() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = DatabaseManager.pool().acquireRead();
+                ResultSet rs = pc.prepare("SELECT MAX(result_id) FROM risk_results").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    static long maxTransactionId() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = DatabaseManager.pool().acquireRead();
+                ResultSet rs = pc.prepare("SELECT MAX(transaction_id) FROM transactions").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Drops rows appended by a write benchmark so every iteration starts at the nominal size.
+    // The rollups are rebuilt from the remaining rows, which takes a few seconds at 10M.
+    static void truncateAfter(long transactionId, long resultId) throws SQLException {
+        try (ConnectionPool.PooledConnection pc = DatabaseManager.pool().acquireWrite();
+                Statement stmt = pc.raw().createStatement()) {
+            stmt.executeUpdate("DELETE FROM risk_results WHERE result_id > " + resultId);
+            stmt.executeUpdate("DELETE FROM transactions WHERE transaction_id > " + transactionId);
+        }
+        DatabaseManager.rebuildRollups();
+    }
+
+    // Folds the WAL back into the main file so the next fork starts from a clean dataset.
+    static void checkpoint() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = DatabaseManager.pool().acquireWrite();
+                Statement stmt = pc.raw().createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        }
+    }
+}
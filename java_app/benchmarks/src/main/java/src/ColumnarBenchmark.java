@@ -0,0 +1,168 @@
+package src;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// SQL path vs ColumnarSnapshot for the scans the analytics do: a full load (SELECT * into one HashMap
+// per row, like fetch_data / getRecentTransactions), per-customer profiles (GROUP BY vs an array pass),
+// rule scoring of every row, and an incremental refresh after 1% more rows were appended.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarBenchmark {
+    @Param({ "100000", "1000000" })
+    public long rows;
+
+    private ConnectionPool pool;
+    private ColumnarSnapshot snapshot;
+    private double[] means;
+    private Map<Integer, Double> meanById;
+    private byte[] scores;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        pool = DatabaseManager.pool();
+        snapshot = new ColumnarSnapshot();
+        snapshot.refresh(pool);
+        ColumnarSnapshot.Profiles profiles = snapshot.customerProfiles();
+        means = profiles.means;
+        meanById = new HashMap<>();
+        for (int k = 0; k < profiles.ids.length; k++)
+            meanById.put(profiles.ids[k], means[k]);
+        scores = new byte[snapshot.columns().size];
+    }
+
+    @TearDown
+    public void tearDown() {
+        DatabaseManager.pool().shutdown();
+    }
+
+    // A snapshot loaded at the nominal size with 1% more rows appended behind it; the rows are
+    // deleted again after the iteration.
+    @State(Scope.Benchmark)
+    public static class Appended {
+        ColumnarSnapshot snapshot;
+        private long baseTransactionId;
+        private long baseResultId;
+
+        @Setup(Level.Iteration)
+        public void append(ColumnarBenchmark bench) throws Exception {
+            baseTransactionId = BenchDatasets.maxTransactionId();
+            baseResultId = BenchDatasets.maxResultId();
+            snapshot = new ColumnarSnapshot();
+            snapshot.refresh(bench.pool);
+            DatabaseManager.bulkInsert(DatabaseManager.mockRecords((int) Math.max(1, bench.rows / 100)));
+        }
+
+        @TearDown(Level.Iteration)
+        public void trim() throws Exception {
+            BenchDatasets.truncateAfter(baseTransactionId, baseResultId);
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> sqlSelectAll() throws Exception {
+        return loadMaps(pool);
+    }
+
+    @Benchmark
+    public ColumnarSnapshot columnarInitialLoad() throws Exception {
+        ColumnarSnapshot s = new ColumnarSnapshot();
+        s.refresh(pool);
+        return s;
+    }
+
+    @Benchmark
+    public RiskScoringEngine sqlCustomerProfiles() throws Exception {
+        RiskScoringEngine engine = new RiskScoringEngine(1 << 16);
+        engine.loadProfiles(pool);
+        return engine;
+    }
+
+    @Benchmark
+    public ColumnarSnapshot.Profiles columnarCustomerProfiles() {
+        return snapshot.customerProfiles();
+    }
+
+    @Benchmark
+    public long[] columnarRuleScan() {
+        return snapshot.ruleScan(means, scores);
+    }
+
+    @Benchmark
+    public long rowWiseRules() throws Exception {
+        return rowWiseRules(pool, meanById);
+    }
+
+    @Benchmark
+    public double columnarSumAmount() {
+        return snapshot.sumAmount(Long.MIN_VALUE + 1, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public long incrementalRefresh(Appended appended) throws Exception {
+        return appended.snapshot.refresh(pool);
+    }
+
+    private static List<Map<String, Object>> loadMaps(ConnectionPool pool) throws Exception {
+        List<Map<String, Object>> list = new ArrayList<>();
+        try (ConnectionPool.PooledConnection pc = pool.acquireRead();
+                ResultSet rs = pc.prepare("SELECT * FROM transactions").executeQuery()) {
+            ResultSetMetaData md = rs.getMetaData();
+            int cols = md.getColumnCount();
+            while (rs.next()) {
+                Map<String, Object> row = new HashMap<>();
+                for (int c = 1; c <= cols; c++)
+                    row.put(md.getColumnLabel(c), rs.getObject(c));
+                list.add(row);
+            }
+        }
+        return list;
+    }
+
+    // The rule loop the row path implies: load every row, then score each against its customer's mean.
+    private static long rowWiseRules(ConnectionPool pool, Map<Integer, Double> meanById) throws Exception {
+        long flagged = 0;
+        for (Map<String, Object> row : loadMaps(pool)) {
+            Object amount = row.get("amount");
+            if (amount == null)
+                continue;
+            double a = ((Number) amount).doubleValue();
+            Object customer = row.get("customer_id");
+            double avg = customer == null ? 0 : meanById.getOrDefault(((Number) customer).intValue(), 0.0);
+            int score = 0;
+            if (a > avg * RiskScoringEngine.AMOUNT_MULTIPLIER && avg > RiskScoringEngine.MIN_SIGNIFICANT_AVG)
+                score += 50;
+            if (a > RiskScoringEngine.ROUND_AMOUNT_MIN && a % 100 == 0)
+                score += 20;
+            if (RiskScoringEngine.SUSPICIOUS_LOCATION.equals(row.get("location")))
+                score += 30;
+            if (score > 0)
+                flagged++;
+        }
+        return flagged;
+    }
+}
@@ -0,0 +1,60 @@
+package src;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Read paths behind /api/transactions and /api/stats, served from the hot cache and straight from SQL.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataAccessBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public long rows;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        DatabaseManager.hotCache(); // warm once; the cached benchmarks measure the steady state
+    }
+
+    @TearDown
+    public void tearDown() {
+        DatabaseManager.pool().shutdown();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getRecentTransactions() {
+        return DatabaseManager.getRecentTransactions();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> queryRecentTransactions() {
+        return DatabaseManager.queryRecentTransactions();
+    }
+
+    @Benchmark
+    public Map<String, Integer> getRiskStats() {
+        return DatabaseManager.getRiskStats();
+    }
+
+    @Benchmark
+    public Map<String, Integer> queryRiskStats() {
+        return DatabaseManager.queryRiskStats();
+    }
+}
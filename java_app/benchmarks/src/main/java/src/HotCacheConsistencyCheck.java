@@ -0,0 +1,89 @@
+package src;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Compares the hot cache with the SQL results while writers are running, and separately the
+// risk_level_totals rollup with a GROUP BY over risk_results; the stats query reads the rollup, so
+// checking the cache against it alone would not catch a drifting rollup.
+// Each comparison briefly holds the writer lease, so both sides see the same committed state.
+// Usage: java -cp target/benchmarks.jar src.HotCacheConsistencyCheck [writerThreads] [checks]
+public class HotCacheConsistencyCheck {
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int checks = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        DatabaseManager.useBenchDatabase("HotCacheConsistencyCheck");
+        DatabaseManager.initializeDatabaseIfEmpty();
+        DatabaseManager.hotCache();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] threads = new Thread[writers];
+        for (int i = 0; i < writers; i++) {
+            threads[i] = new Thread(() -> {
+                while (running.get())
+                    DatabaseManager.addMockData(200);
+            }, "consistency-writer-" + i);
+            threads[i].start();
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < checks; i++) {
+            Thread.sleep(50);
+            List<Map<String, Object>> cachedRows, sqlRows;
+            Map<String, Long> cachedStats, levels, rollup;
+            // Holding the writer lease keeps commits out while both sides are read.
+            ConnectionPool.PooledConnection writer = DatabaseManager.pool().acquireWrite();
+            try (ConnectionPool.PooledConnection reader = DatabaseManager.pool().acquireRead()) {
+                cachedRows = DatabaseManager.getRecentTransactions();
+                cachedStats = counts(DatabaseManager.getRiskStats());
+                sqlRows = DatabaseManager.queryRecentTransactions();
+                levels = groupByLevel(reader);
+                rollup = counts(RiskRollups.readLevelTotals(reader));
+            } finally {
+                writer.close();
+            }
+            if (!cachedRows.equals(sqlRows) || !cachedStats.equals(levels)) {
+                mismatches++;
+                System.out.println("Mismatch on check " + i + ": cached stats " + cachedStats + " vs GROUP BY " + levels);
+            }
+            if (!rollup.equals(levels)) {
+                mismatches++;
+                System.out.println("Rollup mismatch on check " + i + ": risk_level_totals " + rollup + " vs GROUP BY " + levels);
+            }
+        }
+
+        running.set(false);
+        for (Thread t : threads)
+            t.join();
+
+        System.out.println(checks + " checks, " + mismatches + " mismatches");
+        System.out.println("Cache: " + DatabaseManager.hotCache().getMetrics());
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    private static Map<String, Long> groupByLevel(ConnectionPool.PooledConnection pc) throws SQLException {
+        Map<String, Long> levels = new TreeMap<>();
+        try (ResultSet rs = pc.prepare("SELECT risk_level, COUNT(*) FROM risk_results GROUP BY risk_level").executeQuery()) {
+            while (rs.next()) {
+                if (rs.getString(1) != null)
+                    levels.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return levels;
+    }
+
+    // Drops zero counts, which the stats map and the rollup keep but a GROUP BY has no row for.
+    private static Map<String, Long> counts(Map<String, ? extends Number> raw) {
+        Map<String, Long> out = new TreeMap<>();
+        for (Map.Entry<String, ? extends Number> e : raw.entrySet()) {
+            if (e.getKey() != null && e.getValue().longValue() != 0)
+                out.put(e.getKey(), e.getValue().longValue());
+        }
+        return out;
+    }
+}
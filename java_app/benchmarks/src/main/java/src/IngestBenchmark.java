@@ -0,0 +1,105 @@
+package src;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Per-row cost of the batched ingest path vs the old row-by-row autocommit path. Rows added during an
+// iteration are deleted afterwards so the dataset stays at its nominal size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestBenchmark {
+    // The legacy path commits every statement, so it gets the smaller sample.
+    private static final int LEGACY_ROWS = 200;
+    private static final int BULK_ROWS = 20_000;
+
+    @Param({ "100000" })
+    public long rows;
+
+    @Param({ "500" })
+    public int batchSize;
+
+    @Param({ "5000" })
+    public int commitInterval;
+
+    private BulkIngestor ingestor;
+    private long baseTransactionId;
+    private long baseResultId;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        ingestor = DatabaseManager.newIngestor(batchSize, commitInterval);
+        baseTransactionId = BenchDatasets.maxTransactionId();
+        baseResultId = BenchDatasets.maxResultId();
+    }
+
+    @TearDown(Level.Iteration)
+    public void trim() throws Exception {
+        BenchDatasets.truncateAfter(baseTransactionId, baseResultId);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        System.out.println("Scoring: " + DatabaseManager.scoringEngine().getMetrics());
+        BenchDatasets.checkpoint();
+        DatabaseManager.pool().shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEGACY_ROWS)
+    public void rowByRow() throws Exception {
+        legacyInsert(DatabaseManager.mockRecords(LEGACY_ROWS));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_ROWS)
+    public long bulk() throws Exception {
+        return ingestor.ingest(DatabaseManager.mockRecords(BULK_ROWS));
+    }
+
+    // Mirrors the original addMockData: String.format SQL, two statements plus a rowid round trip per row.
+    private static void legacyInsert(Iterator<TransactionRecord> records) throws SQLException {
+        try (Connection conn = DatabaseManager.connect(); Statement stmt = conn.createStatement()) {
+            while (records.hasNext()) {
+                TransactionRecord r = DatabaseManager.scoringEngine().score(records.next());
+                stmt.executeUpdate(String.format(
+                        "INSERT INTO transactions (customer_id, vendor_id, amount, timestamp, location, status) "
+                                + "VALUES (%d, %d, %.2f, '%s', '%s', 'completed')",
+                        r.customerId, r.vendorId, r.amount, r.timestamp, r.location));
+                int txId = 0;
+                try (ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                    if (rs.next())
+                        txId = rs.getInt(1);
+                }
+                if (txId > 0) {
+                    stmt.executeUpdate(String.format(
+                            "INSERT INTO risk_results (transaction_id, risk_score, risk_level, reason, fraud_probability, timestamp) "
+                                    + "VALUES (%d, %.2f, '%s', '%s', 0.0, '%s')",
+                            txId, r.riskScore, r.riskLevel, r.reason, r.timestamp));
+                }
+            }
+        }
+    }
+}
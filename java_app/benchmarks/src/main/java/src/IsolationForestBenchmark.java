@@ -0,0 +1,114 @@
+package src;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Per-event cost of IsolationForest scoring and feature extraction, the rule engine with and without the
+// model, retrain time on the window, and scoring latency while another thread retrains and swaps models
+// (the hotSwap group). Use -bm sample for percentiles. IsolationForestCheck compares against sklearn.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsolationForestBenchmark {
+    private static final int SAMPLE = 4096; // power of two, cycled with a mask
+
+    @Param({ "100000" })
+    public long rows;
+
+    private AnomalyDetector detector;
+    private IsolationForest model;
+    private TransactionRecord[] events;
+    private double[][] features;
+    private RiskScoringEngine rulesOnly;
+    private RiskScoringEngine withModel;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        detector = new AnomalyDetector(DatabaseManager.pool(), 50_000, IsolationForest.DEFAULT_TREES, 42);
+        detector.retrain();
+        model = detector.model();
+        events = new TransactionRecord[SAMPLE];
+        features = new double[SAMPLE][];
+        Iterator<TransactionRecord> mock = DatabaseManager.mockRecords(SAMPLE);
+        for (int i = 0; i < SAMPLE; i++) {
+            events[i] = mock.next();
+            features[i] = IsolationForest.features(events[i]);
+        }
+        rulesOnly = new RiskScoringEngine(1024);
+        withModel = new RiskScoringEngine(1024);
+        withModel.setAnomalyDetector(detector);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("detector " + detector.getMetrics());
+        DatabaseManager.pool().shutdown();
+    }
+
+    @Benchmark
+    public double decisionFunction(Cursor c) {
+        return model.decisionFunction(features[c.next++ & (SAMPLE - 1)]);
+    }
+
+    @Benchmark
+    public double[] features(Cursor c) {
+        return IsolationForest.features(events[c.next++ & (SAMPLE - 1)]);
+    }
+
+    @Benchmark
+    public TransactionRecord scoreRules(Cursor c) {
+        return rulesOnly.score(copy(events[c.next++ & (SAMPLE - 1)]));
+    }
+
+    @Benchmark
+    public TransactionRecord scoreRulesAndModel(Cursor c) {
+        return withModel.score(copy(events[c.next++ & (SAMPLE - 1)]));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean retrain() throws Exception {
+        return detector.retrain();
+    }
+
+    @Benchmark
+    @Group("hotSwap")
+    @GroupThreads(1)
+    public TransactionRecord applyDuringRetrain(Cursor c) {
+        return detector.apply(copy(events[c.next++ & (SAMPLE - 1)]));
+    }
+
+    @Benchmark
+    @Group("hotSwap")
+    @GroupThreads(1)
+    public boolean retrainAndSwap() throws Exception {
+        return detector.retrain();
+    }
+
+    private static TransactionRecord copy(TransactionRecord r) {
+        return new TransactionRecord(r.customerId, r.vendorId, r.amount, r.timestamp, r.location, r.status);
+    }
+}
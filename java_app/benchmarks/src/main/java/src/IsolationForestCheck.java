@@ -0,0 +1,108 @@
+package src;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Compares IsolationForest against sklearn using python_engine/export_iforest.py output: the exported
+// trees scored in Java must reproduce sklearn's score_samples, and a Java-trained forest on the same rows
+// must rank them the same way and flag the same anomalies. Needs no database.
+// Usage: java -cp target/benchmarks.jar src.IsolationForestCheck <export.json>
+public class IsolationForestCheck {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: IsolationForestCheck <export.json>");
+            System.exit(2);
+        }
+        check(Path.of(args[0]));
+    }
+
+    private static void check(Path export) throws Exception {
+        String json = Files.readString(export);
+        JsonObject o = JsonParser.parseString(json).getAsJsonObject();
+        JsonArray rowsJson = o.getAsJsonArray("rows");
+        JsonArray expectedJson = o.getAsJsonArray("score_samples");
+        JsonArray decisionJson = o.getAsJsonArray("decision_function");
+        int n = rowsJson.size();
+        double[][] rows = new double[n][];
+        double[] expected = new double[n];
+        double[] expectedDecision = new double[n];
+        for (int i = 0; i < n; i++) {
+            JsonArray r = rowsJson.get(i).getAsJsonArray();
+            rows[i] = new double[] { (float) r.get(0).getAsDouble(), (float) r.get(1).getAsDouble() };
+            expected[i] = expectedJson.get(i).getAsDouble();
+            expectedDecision[i] = decisionJson.get(i).getAsDouble();
+        }
+
+        IsolationForest imported = IsolationForest.fromSklearn(new StringReader(json));
+        double maxDiff = 0;
+        int flagMismatches = 0;
+        for (int i = 0; i < n; i++) {
+            maxDiff = Math.max(maxDiff, Math.abs(imported.scoreSamples(rows[i]) - expected[i]));
+            if ((imported.decisionFunction(rows[i]) < 0) != (expectedDecision[i] < 0))
+                flagMismatches++;
+        }
+        System.out.printf("sklearn trees scored in Java: %,d rows, max |score_samples diff| = %.3g, "
+                + "anomaly flag mismatches = %d%n", n, maxDiff, flagMismatches);
+
+        // An independently trained forest differs tree by tree; compare rankings and flagged sets.
+        IsolationForest trained = IsolationForest.train(rows, IsolationForest.DEFAULT_TREES,
+                IsolationForest.DEFAULT_MAX_SAMPLES, o.get("contamination").getAsDouble(), 42);
+        double[] actual = new double[n];
+        int both = 0, javaOnly = 0, sklearnOnly = 0;
+        for (int i = 0; i < n; i++) {
+            actual[i] = trained.scoreSamples(rows[i]);
+            boolean j = trained.decisionFunction(rows[i]) < 0;
+            boolean s = expectedDecision[i] < 0;
+            if (j && s)
+                both++;
+            else if (j)
+                javaOnly++;
+            else if (s)
+                sklearnOnly++;
+        }
+        System.out.printf("Java-trained forest: Spearman rho = %.4f, flagged both = %,d, Java only = %,d, "
+                + "sklearn only = %,d (Jaccard %.3f)%n", spearman(actual, expected), both, javaOnly, sklearnOnly,
+                both / (double) Math.max(1, both + javaOnly + sklearnOnly));
+    }
+
+    private static double spearman(double[] a, double[] b) {
+        double[] ra = ranks(a), rb = ranks(b);
+        double ma = 0, mb = 0;
+        for (int i = 0; i < ra.length; i++) {
+            ma += ra[i];
+            mb += rb[i];
+        }
+        ma /= ra.length;
+        mb /= rb.length;
+        double cov = 0, va = 0, vb = 0;
+        for (int i = 0; i < ra.length; i++) {
+            cov += (ra[i] - ma) * (rb[i] - mb);
+            va += (ra[i] - ma) * (ra[i] - ma);
+            vb += (rb[i] - mb) * (rb[i] - mb);
+        }
+        return cov / Math.sqrt(va * vb);
+    }
+
+    // Average ranks, so ties (common: many rows share a leaf pattern) are handled.
+    private static double[] ranks(double[] v) {
+        Integer[] idx = new Integer[v.length];
+        for (int i = 0; i < idx.length; i++)
+            idx[i] = i;
+        Arrays.sort(idx, (x, y) -> Double.compare(v[x], v[y]));
+        double[] r = new double[v.length];
+        for (int i = 0; i < idx.length;) {
+            int j = i;
+            while (j + 1 < idx.length && v[idx[j + 1]] == v[idx[i]])
+                j++;
+            for (int k = i; k <= j; k++)
+                r[idx[k]] = (i + j) / 2.0;
+            i = j + 1;
+        }
+        return r;
+    }
+}
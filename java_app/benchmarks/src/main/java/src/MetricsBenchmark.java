@@ -0,0 +1,88 @@
+package src;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of recording into Metrics: Timer.record and Counter.increment, the System.nanoTime() pair a timed
+// call needs, one timer shared by every hardware thread, and RiskScoringEngine.score with metrics on vs
+// off (METRICS_ENABLED). Needs no database.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private static final int SAMPLE = 4096; // power of two, cycled with a mask
+
+    @Param({ "true", "false" })
+    public boolean enabled;
+
+    // One timer and counter for all threads, as the server's request metrics are.
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final Metrics.Timer timer = Metrics.timer("bench_seconds", "MetricsBenchmark timer");
+        final Metrics.Counter counter = Metrics.counter("bench_total", "MetricsBenchmark counter");
+    }
+
+    private TransactionRecord[] records;
+    private RiskScoringEngine engine;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Metrics.setEnabled(enabled);
+        records = new TransactionRecord[SAMPLE];
+        Iterator<TransactionRecord> mock = DatabaseManager.mockRecords(SAMPLE);
+        for (int i = 0; i < SAMPLE; i++)
+            records[i] = mock.next();
+        engine = new RiskScoringEngine(1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Metrics.setEnabled(true);
+    }
+
+    @Benchmark
+    public long nanoTimePair() {
+        long t0 = System.nanoTime();
+        return System.nanoTime() - t0;
+    }
+
+    @Benchmark
+    public void counterIncrement(Shared shared) {
+        shared.counter.increment();
+    }
+
+    @Benchmark
+    public void timerRecord(Shared shared) {
+        shared.timer.record(200 + (next++ & 1023) * 37L);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void timerRecordContended(Shared shared) {
+        shared.timer.record(200 + (next++ & 1023) * 37L);
+    }
+
+    // End to end: the scoring call records one timer per event.
+    @Benchmark
+    public TransactionRecord score() {
+        TransactionRecord r = records[next++ & (SAMPLE - 1)];
+        return engine.score(new TransactionRecord(r.customerId, r.vendorId, r.amount, r.timestamp, r.location, r.status));
+    }
+}
@@ -0,0 +1,120 @@
+package src;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Keyset page latency of /api/transactions as risk_results grows: first pages, deep pages (following
+// cursors), filtered pages, and an OFFSET query at the same depth for contrast.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginationBenchmark {
+    private static final int DEEP_PAGES = 50;
+
+    @Param({ "100000", "1000000", "10000000" })
+    public long rows;
+
+    private String deepTime;
+    private String deepHigh;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        deepTime = cursorAt("limit=100", DEEP_PAGES);
+        deepHigh = cursorAt("level=HIGH&limit=100", DEEP_PAGES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        DatabaseManager.pool().shutdown();
+    }
+
+    @Benchmark
+    public String firstPage() throws IOException {
+        return page("limit=100", null);
+    }
+
+    @Benchmark
+    public String deepPage() throws IOException {
+        return page("limit=100", deepTime);
+    }
+
+    @Benchmark
+    public String firstPageCritical() throws IOException {
+        return page("level=CRITICAL&limit=100", null);
+    }
+
+    @Benchmark
+    public String deepPageHigh() throws IOException {
+        return page("level=HIGH&limit=100", deepHigh);
+    }
+
+    @Benchmark
+    public String firstPageByScore() throws IOException {
+        return page("sort=score&limit=100", null);
+    }
+
+    @Benchmark
+    public double offsetPage() throws SQLException {
+        double sum = 0;
+        try (ConnectionPool.PooledConnection pc = DatabaseManager.pool().acquireRead()) {
+            PreparedStatement ps = pc.prepare("SELECT r.transaction_id, t.amount, r.risk_score FROM risk_results r "
+                    + "JOIN transactions t ON r.transaction_id = t.transaction_id "
+                    + "ORDER BY r.timestamp DESC, r.transaction_id DESC LIMIT 100 OFFSET ?");
+            ps.setInt(1, DEEP_PAGES * 100);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    sum += rs.getDouble(2);
+            }
+        }
+        return sum;
+    }
+
+    // Streams one page and returns its "next" cursor.
+    private static String page(String query, String cursor) throws IOException {
+        TransactionQuery q = TransactionQuery.fromQueryString(cursor == null ? query : query + "&after=" + cursor);
+        StringWriter sw = new StringWriter();
+        DatabaseManager.streamTransactionPage(q, new JsonWriter(sw));
+        return extractNext(sw.toString());
+    }
+
+    // Cursor of the page reached after following "next" hops times.
+    private static String cursorAt(String query, int hops) throws IOException {
+        String cursor = null;
+        for (int i = 0; i < hops; i++) {
+            String next = page(query, cursor);
+            if (next == null)
+                break;
+            cursor = next;
+        }
+        return cursor;
+    }
+
+    private static String extractNext(String json) {
+        int i = json.lastIndexOf("\"next\":\"");
+        if (i < 0)
+            return null;
+        int start = i + 8;
+        return json.substring(start, json.indexOf('"', start));
+    }
+}
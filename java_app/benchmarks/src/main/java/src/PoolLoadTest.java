@@ -0,0 +1,87 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Reader latency under concurrent writes. Readers run the uncached SQL paths, so the percentiles
+// measure the pool and SQLite rather than the hot cache.
+// Usage: java -cp target/benchmarks.jar src.PoolLoadTest [readerThreads] [seconds] [rowsPerWrite]
+public class PoolLoadTest {
+    public static void main(String[] args) throws Exception {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int rowsPerWrite = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        DatabaseManager.useBenchDatabase("PoolLoadTest");
+        DatabaseManager.initializeDatabaseIfEmpty();
+        System.out.println("Load test: " + readers + " readers, 1 writer (" + rowsPerWrite + " rows/write), "
+                + seconds + "s");
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] writes = new long[1];
+
+        Thread writer = new Thread(() -> {
+            while (running.get()) {
+                DatabaseManager.addMockData(rowsPerWrite);
+                writes[0]++;
+            }
+        }, "load-writer");
+
+        List<long[]> samples = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            long[] buf = new long[1 << 20];
+            samples.add(buf);
+            final int idx = i;
+            Thread t = new Thread(() -> {
+                int n = 0;
+                while (running.get() && n < buf.length - 1) {
+                    long start = System.nanoTime();
+                    if ((n & 1) == 0)
+                        DatabaseManager.queryRecentTransactions();
+                    else
+                        DatabaseManager.queryRiskStats();
+                    buf[++n] = System.nanoTime() - start;
+                }
+                buf[0] = n; // slot 0 holds the sample count
+            }, "load-reader-" + idx);
+            threads.add(t);
+        }
+
+        writer.start();
+        threads.forEach(Thread::start);
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        writer.join();
+        for (Thread t : threads)
+            t.join();
+
+        int total = 0;
+        for (long[] buf : samples)
+            total += (int) buf[0];
+        long[] all = new long[total];
+        int pos = 0;
+        for (long[] buf : samples) {
+            int n = (int) buf[0];
+            System.arraycopy(buf, 1, all, pos, n);
+            pos += n;
+        }
+        Arrays.sort(all);
+
+        System.out.println("Reads: " + total + " (" + (total / seconds) + "/s), write batches: " + writes[0]);
+        if (total > 0) {
+            System.out.printf("Read latency ms  p50=%.3f  p95=%.3f  p99=%.3f  max=%.3f%n",
+                    percentile(all, 0.50), percentile(all, 0.95), percentile(all, 0.99), all[total - 1] / 1e6);
+        }
+        for (Map.Entry<String, Object> e : DatabaseManager.getPoolMetrics().entrySet())
+            System.out.println("  " + e.getKey() + " = " + e.getValue());
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int idx = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, idx)] / 1e6;
+    }
+}
@@ -0,0 +1,59 @@
+package src;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Core scaling of the Rescorer's parallel read + score phase (results dropped, no shadow writes), and a
+// full rescore with shadow table and swap. The full rescore rewrites the dataset's risk_results with the
+// same rules, so later runs see the same data.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RescoreBenchmark {
+    @Param({ "1000000" })
+    public long rows;
+
+    @Param({ "1", "2", "4", "8" })
+    public int parallelism;
+
+    private ConnectionPool pool;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        pool = DatabaseManager.pool();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchDatasets.checkpoint();
+        DatabaseManager.pool().shutdown();
+    }
+
+    @Benchmark
+    public Map<String, Object> scoreOnly() throws Exception {
+        return new Rescorer(pool, parallelism, 50_000, 20_000, false).run();
+    }
+
+    @Benchmark
+    public Map<String, Object> fullRescore() throws Exception {
+        Map<String, Object> r = new Rescorer(pool, parallelism, 50_000, 20_000, true).run();
+        DatabaseManager.refreshHotCache();
+        return r;
+    }
+}
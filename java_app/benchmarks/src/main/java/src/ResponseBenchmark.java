@@ -0,0 +1,113 @@
+package src;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Encoding one /api/transactions response, old (gson toJson -> String -> byte[]) vs streaming from the
+// ResultSet or the hot cache, with and without gzip. Each returns the bytes put on the wire; run with
+// -prof gc for the heap allocated per response (gc.alloc.rate.norm).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+    private static final Gson gson = new Gson();
+
+    @Param({ "100000" })
+    public long rows;
+
+    private List<Map<String, Object>> cached;
+    private final CountingStream sink = new CountingStream();
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        cached = DatabaseManager.hotCache().getRecent();
+    }
+
+    @TearDown
+    public void tearDown() {
+        DatabaseManager.pool().shutdown();
+    }
+
+    @Benchmark
+    public long gsonToString() throws IOException {
+        byte[] bytes = gson.toJson(DatabaseManager.queryRecentTransactions()).getBytes("UTF-8");
+        sink.reset().write(bytes);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long streamFromResultSet() throws IOException {
+        stream(sink.reset(), DatabaseManager::streamRecentTransactions);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long streamFromResultSetGzip() throws IOException {
+        stream(new GZIPOutputStream(sink.reset(), 8192), DatabaseManager::streamRecentTransactions);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long streamFromHotCache() throws IOException {
+        stream(sink.reset(), w -> JsonStreaming.writeRows(w, cached));
+        return sink.count;
+    }
+
+    @Benchmark
+    public long streamFromHotCacheGzip() throws IOException {
+        stream(new GZIPOutputStream(sink.reset(), 8192), w -> JsonStreaming.writeRows(w, cached));
+        return sink.count;
+    }
+
+    private static void stream(OutputStream os, JsonStreaming.Body body) throws IOException {
+        try (JsonWriter w = new JsonWriter(
+                new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 8192))) {
+            body.write(w);
+        }
+    }
+
+    // Discards output, counting bytes; close() is a no-op so encoders can close their writers.
+    private static class CountingStream extends OutputStream {
+        long count;
+
+        CountingStream reset() {
+            count = 0;
+            return this;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
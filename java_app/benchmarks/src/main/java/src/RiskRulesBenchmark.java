@@ -0,0 +1,60 @@
+package src;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Per-transaction scoring cost: the static rules alone, and the engine (profile update + rules).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RiskRulesBenchmark {
+    private static final int SAMPLE = 4096; // power of two, cycled with a mask
+
+    // Customers tracked by the engine's profile table.
+    @Param({ "1000", "100000" })
+    public int customers;
+
+    private TransactionRecord[] records;
+    private RiskScoringEngine engine;
+    private int next;
+
+    @Setup
+    public void setup() {
+        records = new TransactionRecord[SAMPLE];
+        Iterator<TransactionRecord> it = DatabaseManager.mockRecords(SAMPLE);
+        for (int i = 0; i < SAMPLE; i++) {
+            TransactionRecord m = it.next();
+            int customer = 1 + (i * 7919) % customers;
+            records[i] = new TransactionRecord(customer, m.vendorId, m.amount, m.timestamp, m.location, m.status);
+        }
+        engine = new RiskScoringEngine(customers);
+        for (int c = 1; c <= customers; c++)
+            engine.score(new TransactionRecord(c, 1, 100.0 + c % 400, null, "London", "completed"));
+    }
+
+    @Benchmark
+    public TransactionRecord applyRules() {
+        TransactionRecord r = records[next++ & (SAMPLE - 1)];
+        return RiskScoringEngine.applyRules(r, 1500.0);
+    }
+
+    @Benchmark
+    public TransactionRecord score() {
+        TransactionRecord r = records[next++ & (SAMPLE - 1)];
+        return engine.score(r);
+    }
+}
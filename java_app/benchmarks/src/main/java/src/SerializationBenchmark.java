@@ -0,0 +1,71 @@
+package src;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Response encoding for the transactions payload: the original sendResponse path
+// (gson.toJson to a String, then getBytes) against JsonStreaming writing the same rows to a byte stream.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final Gson gson = new Gson();
+
+    // 100 is the /api/transactions window; 1000 is the largest page TransactionQuery allows.
+    @Param({ "100", "1000" })
+    public int window;
+
+    private List<Map<String, Object>> payload;
+
+    @Setup
+    public void setup() {
+        payload = new ArrayList<>(window);
+        Iterator<TransactionRecord> it = DatabaseManager.mockRecords(window);
+        long id = 1;
+        while (it.hasNext()) {
+            TransactionRecord r = RiskScoringEngine.applyRules(it.next(), 1500.0);
+            r.transactionId = id++;
+            payload.add(r.toRow("Retail"));
+        }
+    }
+
+    @Benchmark
+    public byte[] gsonToJson() throws IOException {
+        String response = gson.toJson(payload);
+        return response.getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public byte[] jsonStreaming() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        try (JsonWriter w = new JsonWriter(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192))) {
+            JsonStreaming.writeRows(w, payload);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,124 @@
+package src;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Throughput and tail latency of RiskApiServer per executor mode, and how fast shed requests get
+// their 503 (they should not wait behind the admitted ones).
+// Run with HOT_CACHE_ENABLED=false to put SQLite on the request path.
+// Usage: java -cp target/benchmarks.jar src.ServerLoadTest [clients] [seconds] [modes, e.g. single,pool,virtual]
+public class ServerLoadTest {
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String modes = args.length > 2 ? args[2] : "single,pool,virtual";
+
+        DatabaseManager.useBenchDatabase("ServerLoadTest");
+        DatabaseManager.initializeDatabaseIfEmpty();
+
+        System.out.printf("%-8s %10s %9s %9s %9s %9s %8s %11s%n", "mode", "req/s", "p50 ms", "p99 ms", "p99.9 ms",
+                "max ms", "503s", "503 p99 ms");
+        for (String m : modes.split(",")) {
+            ServerExecutors.Mode mode = ServerExecutors.parseMode(m);
+            HttpServer server = RiskApiServer.start(0, mode, DatabaseManager.envInt("SERVER_THREADS", 16),
+                    DatabaseManager.envInt("SERVER_BACKLOG", 256), DatabaseManager.envInt("SERVER_QUEUE_TIMEOUT_MS", 2000),
+                    DatabaseManager.envInt("SERVER_HANDLER_TIMEOUT_MS", 30000));
+            try {
+                run(mode, server.getAddress().getPort(), clients, seconds);
+            } finally {
+                RiskApiServer.stop(server);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(ServerExecutors.Mode mode, int port, int clients, int seconds) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest[] requests = {
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/transactions"))
+                        .timeout(Duration.ofSeconds(30)).build(),
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/stats"))
+                        .timeout(Duration.ofSeconds(30)).build()
+        };
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder rejected = new LongAdder();
+        LongAdder errors = new LongAdder();
+        List<long[]> samples = new ArrayList<>();
+        List<long[]> shedSamples = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            long[] buf = new long[1 << 18];
+            long[] shedBuf = new long[1 << 16];
+            samples.add(buf);
+            shedSamples.add(shedBuf);
+            Thread t = new Thread(() -> {
+                int n = 0;
+                while (running.get() && n < buf.length - 1) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> res = http.send(requests[n & 1], HttpResponse.BodyHandlers.discarding());
+                        if (res.statusCode() == 503) {
+                            rejected.increment();
+                            if (shedBuf[0] < shedBuf.length - 1)
+                                shedBuf[(int) ++shedBuf[0]] = System.nanoTime() - start;
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                    buf[++n] = System.nanoTime() - start;
+                }
+                buf[0] = n;
+            });
+            threads.add(t);
+        }
+
+        threads.forEach(Thread::start);
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread t : threads)
+            t.join();
+
+        long[] all = merge(samples);
+        int total = all.length;
+        if (total == 0) {
+            System.out.printf("%-8s no completed requests (%d errors)%n", mode.name().toLowerCase(), errors.sum());
+            return;
+        }
+        long[] shed = merge(shedSamples);
+        System.out.printf("%-8s %10.0f %9.2f %9.2f %9.2f %9.2f %8d %11s%s%n", mode.name().toLowerCase(),
+                total / (double) seconds, pct(all, 0.50), pct(all, 0.99), pct(all, 0.999), all[total - 1] / 1e6,
+                rejected.sum(), shed.length == 0 ? "-" : String.format("%.2f", pct(shed, 0.99)),
+                errors.sum() > 0 ? "  (" + errors.sum() + " errors)" : "");
+    }
+
+    // Each buffer holds its sample count in slot 0.
+    private static long[] merge(List<long[]> buffers) {
+        int total = 0;
+        for (long[] buf : buffers)
+            total += (int) buf[0];
+        long[] all = new long[total];
+        int pos = 0;
+        for (long[] buf : buffers) {
+            System.arraycopy(buf, 1, all, pos, (int) buf[0]);
+            pos += (int) buf[0];
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static double pct(long[] sorted, double p) {
+        int idx = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, idx)] / 1e6;
+    }
+}
@@ -0,0 +1,132 @@
+package src;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fan-out cost of /api/stream as the number of subscribers grows.
+// Reports CPU time of the server-side SSE threads per second while a writer ingests steadily.
+// The last step adds clients that connect and never read, more of them than there are writer threads:
+// delivery to the reading clients must carry on while the stalled ones are timed out.
+// Usage: java -cp target/benchmarks.jar src.StreamLoadTest [seconds per step] [subscriber counts, e.g. 100,300,600] [stalled]
+public class StreamLoadTest {
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String steps = args.length > 1 ? args[1] : "100,300,600";
+        int stalled = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        DatabaseManager.useBenchDatabase("StreamLoadTest");
+        DatabaseManager.initializeDatabaseIfEmpty();
+        DatabaseManager.hotCache();
+        HttpServer server = RiskApiServer.start(0, ServerExecutors.Mode.POOL, 16, 1024, 5000, 30000);
+        int port = server.getAddress().getPort();
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicBoolean flatOut = new AtomicBoolean(); // bigger commits, shorter pauses
+        Thread writer = new Thread(() -> {
+            while (writing.get()) {
+                DatabaseManager.addMockData(flatOut.get() ? 200 : 50);
+                try {
+                    Thread.sleep(flatOut.get() ? 60 : 100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "stream-test-writer");
+        writer.start();
+
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        List<Socket> sockets = new ArrayList<>();
+        List<Socket> stalledSockets = new ArrayList<>();
+        LongAdder received = new LongAdder();
+
+        System.out.printf("%12s %14s %16s %18s%n", "subscribers", "events recv/s", "SSE CPU ms/s", "CPU us per delivery");
+        String[] counts = steps.split(",");
+        for (int i = 0; i <= counts.length; i++) {
+            String label;
+            if (i < counts.length) {
+                int target = Integer.parseInt(counts[i].trim());
+                while (sockets.size() < target)
+                    sockets.add(subscribe(port, received, true));
+                label = Integer.toString(sockets.size());
+            } else if (stalled > 0) {
+                while (stalledSockets.size() < stalled)
+                    stalledSockets.add(subscribe(port, received, false));
+                flatOut.set(true); // fills the stalled sockets' buffers within the step
+                label = sockets.size() + "+" + stalled + " stalled";
+            } else {
+                break;
+            }
+            Thread.sleep(500); // let connections settle
+
+            long cpuBefore = sseCpuNanos(mx);
+            long recvBefore = received.sum();
+            Thread.sleep(seconds * 1000L);
+            long cpu = sseCpuNanos(mx) - cpuBefore;
+            long recv = received.sum() - recvBefore;
+
+            System.out.printf("%12s %14.0f %16.2f %18.2f%n", label, recv / (double) seconds, cpu / 1e6 / seconds,
+                    recv == 0 ? 0.0 : cpu / 1e3 / recv);
+        }
+        System.out.println("Hub: " + RiskApiServer.getStreamMetrics());
+
+        writing.set(false);
+        writer.join();
+        for (Socket s : sockets)
+            s.close();
+        for (Socket s : stalledSockets)
+            s.close();
+        RiskApiServer.stop(server);
+        System.exit(0);
+    }
+
+    private static long sseCpuNanos(ThreadMXBean mx) {
+        long total = 0;
+        for (java.lang.management.ThreadInfo info : mx.getThreadInfo(mx.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith("sse-")) {
+                long t = mx.getThreadCpuTime(info.getThreadId());
+                if (t > 0)
+                    total += t;
+            }
+        }
+        return total;
+    }
+
+    // A client that does not read keeps a minimal receive buffer, so the server's writes to it block soon.
+    private static Socket subscribe(int port, LongAdder received, boolean reading) throws Exception {
+        Socket socket = new Socket();
+        if (!reading)
+            socket.setReceiveBufferSize(1024);
+        socket.connect(new java.net.InetSocketAddress("127.0.0.1", port));
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET /api/stream HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        if (!reading)
+            return socket;
+        Thread t = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("event:"))
+                        received.increment();
+                }
+            } catch (Exception ignored) {
+                // socket closed at the end of the test
+            }
+        }, "stream-test-client");
+        t.setDaemon(true);
+        t.start();
+        return socket;
+    }
+}
@@ -0,0 +1,146 @@
+package src;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelListener;
+import java.io.Writer;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Streams the whole table through writeCsv into a null writer, and drives TransactionTableModel the way a
+// scrolling JTable would, without a display: count + first page of a fresh model, page loads while
+// scrolling down page by page (keyset seeks), random jumps (offset seeks), and event-thread time per
+// getValueAt on a cached page. The datasets are larger than the model's page cache, so scrolling and
+// jumping keep hitting pages that are not loaded.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableModelBenchmark {
+    private static final int CELLS = TransactionTableModel.PAGE_SIZE * 6;
+
+    @Param({ "1000000" })
+    public long rows;
+
+    private TransactionTableModel model;
+    private int rowCount;
+    private int scrollPage;
+    private final SplittableRandom rnd = new SplittableRandom(42);
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        model = new TransactionTableModel();
+        awaitUpdate(model, () -> model.refresh());
+        rowCount = onEdt(model::getRowCount);
+        awaitUpdate(model, () -> model.getValueAt(0, 0));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        System.out.println("model " + onEdt(model::getMetrics));
+        DatabaseManager.pool().shutdown();
+    }
+
+    @Benchmark
+    public long writeCsv() throws Exception {
+        return TransactionTableModel.writeCsv(Writer.nullWriter(), n -> {
+        });
+    }
+
+    @Benchmark
+    public TransactionTableModel firstPage() throws Exception {
+        TransactionTableModel fresh = new TransactionTableModel();
+        awaitUpdate(fresh, () -> fresh.refresh());
+        awaitUpdate(fresh, () -> fresh.getValueAt(0, 0));
+        return fresh;
+    }
+
+    @Benchmark
+    public void scrollPageByPage() throws Exception {
+        scrollPage = (scrollPage + 1) % (rowCount / TransactionTableModel.PAGE_SIZE);
+        awaitPage(scrollPage * TransactionTableModel.PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void randomJump() throws Exception {
+        while (!awaitPage(rnd.nextInt(rowCount))) {
+            // cached pages fire no event; pick another
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(CELLS)
+    public Object getValueAtCached() throws Exception {
+        return onEdt(() -> {
+            Object last = null;
+            for (int i = 0; i < CELLS; i++)
+                last = model.getValueAt(i % TransactionTableModel.PAGE_SIZE, i % 6);
+            return last;
+        });
+    }
+
+    // Asks for row on the event thread; if its page is not cached, waits for the page to arrive.
+    private boolean awaitPage(int row) throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        TableModelListener l = e -> fired.countDown();
+        boolean loading = onEdt(() -> {
+            model.addTableModelListener(l);
+            if (!"Loading...".equals(model.getValueAt(row, 4))) { // cached, or a page that failed to load
+                model.removeTableModelListener(l);
+                return false;
+            }
+            return true;
+        });
+        if (!loading)
+            return false;
+        if (!fired.await(60, TimeUnit.SECONDS))
+            throw new IllegalStateException("no table update within 60 s");
+        SwingUtilities.invokeAndWait(() -> model.removeTableModelListener(l));
+        return true;
+    }
+
+    // Runs action on the event thread and waits for the model's next change event.
+    private static void awaitUpdate(TransactionTableModel model, Runnable action) throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        TableModelListener l = e -> fired.countDown();
+        SwingUtilities.invokeAndWait(() -> {
+            model.addTableModelListener(l);
+            action.run();
+        });
+        if (!fired.await(60, TimeUnit.SECONDS))
+            throw new IllegalStateException("no table update within 60 s");
+        SwingUtilities.invokeAndWait(() -> model.removeTableModelListener(l));
+    }
+
+    private static <T> T onEdt(Callable<T> c) throws Exception {
+        Object[] out = new Object[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                out[0] = c.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        @SuppressWarnings("unchecked")
+        T t = (T) out[0];
+        return t;
+    }
+}
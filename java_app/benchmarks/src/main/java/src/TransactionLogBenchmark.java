@@ -0,0 +1,191 @@
+package src;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Caller latency of a burst of ingests through the memory-mapped TransactionLog vs straight into
+// SQLite, while another writer keeps the SQLite write lock busy (sampled, so p50/p99 are reported), and
+// crash recovery: an unflushed log plus a torn record, reopened and replayed.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionLogBenchmark {
+    @Param({ "100000" })
+    public long rows;
+
+    @Param({ "1000" })
+    public int burstSize;
+
+    private ConnectionPool pool;
+    private List<TransactionRecord> burst;
+    private long baseTransactionId;
+    private long baseResultId;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchDatasets.open(rows);
+        pool = DatabaseManager.pool();
+        baseTransactionId = BenchDatasets.maxTransactionId();
+        baseResultId = BenchDatasets.maxResultId();
+        burst = new ArrayList<>(burstSize);
+        DatabaseManager.mockRecords(burstSize).forEachRemaining(burst::add);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchDatasets.truncateAfter(baseTransactionId, baseResultId);
+        BenchDatasets.checkpoint();
+        DatabaseManager.pool().shutdown();
+    }
+
+    // A background writer holding the write lock in 5000-row commits, as a bulk load would, and a log
+    // draining into the same database.
+    @State(Scope.Benchmark)
+    public static class Contended {
+        private final AtomicBoolean loading = new AtomicBoolean(true);
+        private Thread loader;
+        TransactionLog log;
+        long lastSeq;
+
+        @Setup
+        public void setup(TransactionLogBenchmark bench) throws Exception {
+            loader = new Thread(() -> {
+                BulkIngestor bulk = DatabaseManager.newIngestor(500, 5000);
+                while (loading.get()) {
+                    try {
+                        bulk.ingest(DatabaseManager.mockRecords(5000));
+                    } catch (SQLException e) {
+                        System.out.println("Loader failed: " + e.getMessage());
+                        return;
+                    }
+                }
+            }, "background-loader");
+            loader.start();
+            log = new TransactionLog(Files.createTempDirectory("txlog-bench"), bench.pool,
+                    DatabaseManager.newIngestor(1000, 50000), 64 << 20, 16, 50000, 200);
+            log.start();
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            log.awaitDrained(lastSeq, 600_000);
+            System.out.println("log " + log.getMetrics());
+            loading.set(false);
+            loader.join();
+            log.close();
+        }
+    }
+
+    // A log abandoned after `records` appends with no compactor running, with half a record written
+    // behind the last one, as a crash mid-append would leave it.
+    @State(Scope.Benchmark)
+    public static class Crashed {
+        @Param({ "500000" })
+        public int records;
+
+        Path dir;
+        long before;
+
+        @Setup(Level.Iteration)
+        public void crash(TransactionLogBenchmark bench) throws Exception {
+            dir = Files.createTempDirectory("txlog-crash");
+            before = countTransactions(bench.pool);
+            TransactionLog crashed = new TransactionLog(dir, bench.pool, DatabaseManager.newIngestor(1000, 50000),
+                    64 << 20, 64, 50000, 200);
+            crashed.appendAll(DatabaseManager.mockRecords(records));
+            tearNextRecord(dir);
+        }
+
+        @TearDown(Level.Iteration)
+        public void trim(TransactionLogBenchmark bench) throws Exception {
+            BenchDatasets.truncateAfter(bench.baseTransactionId, bench.baseResultId);
+        }
+    }
+
+    @Benchmark
+    public void directBulkInsert(Contended contended) throws Exception {
+        DatabaseManager.bulkInsert(burst.iterator());
+    }
+
+    @Benchmark
+    public void logAppend(Contended contended) throws Exception {
+        long last = 0;
+        for (TransactionRecord r : burst)
+            last = contended.log.append(r);
+        contended.lastSeq = last;
+    }
+
+    // Scan of the surviving segments plus replay of every record into SQLite; fails on a record count
+    // that does not match what was appended.
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public TransactionLog recover(Crashed crashed) throws Exception {
+        TransactionLog recovered = new TransactionLog(crashed.dir, pool, DatabaseManager.newIngestor(1000, 50000),
+                64 << 20, 64, 50000, 200);
+        recovered.start();
+        recovered.awaitDrained(recovered.publishedSeq(), 600_000);
+        recovered.close();
+        long applied = countTransactions(pool) - crashed.before;
+        if (applied != crashed.records)
+            throw new IllegalStateException("recovered " + applied + " of " + crashed.records + " records");
+        return recovered;
+    }
+
+    // Writes half a record after the last appended one.
+    private static void tearNextRecord(Path dir) throws Exception {
+        Path segment;
+        try (java.util.stream.Stream<Path> s = Files.list(dir)) {
+            segment = s.filter(p -> p.toString().endsWith(".seg")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            ch.read(buf, 0);
+            long firstSeq = buf.getLong(16);
+            long index = 0;
+            while (true) {
+                buf.clear().limit(8);
+                if (ch.read(buf, 64 + index * TransactionLog.RECORD_BYTES) < 8 || buf.getLong(0) == 0)
+                    break;
+                index++;
+            }
+            buf.clear();
+            buf.putLong(firstSeq + index).putLong(0x0BADF00DL).putLong(42).flip();
+            ch.write(buf, 64 + index * TransactionLog.RECORD_BYTES);
+        }
+    }
+
+    private static long countTransactions(ConnectionPool pool) throws SQLException {
+        try (ConnectionPool.PooledConnection pc = pool.acquireRead();
+                ResultSet rs = pc.prepare("SELECT COUNT(*) FROM transactions").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
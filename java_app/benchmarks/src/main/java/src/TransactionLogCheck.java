@@ -0,0 +1,92 @@
+package src;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Failure injection for TransactionLog compaction. One compaction batch spans several ingest commits
+// (the batch is not a multiple of the commit interval), and a poisoned record in its last chunk makes
+// the insert fail after the earlier chunks have committed. Once the fault is cleared, every record
+// must be in SQLite exactly once, and the scoring engine's customer profiles must match the committed
+// rows (the failed chunk's records were scored, rolled back and scored again).
+// Usage: java -cp target/benchmarks.jar src.TransactionLogCheck [records]
+public class TransactionLogCheck {
+    private static final int POISON_CUSTOMER = -1;
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2500;
+
+        DatabaseManager.useBenchDatabase("TransactionLogCheck");
+        DatabaseManager.initializeDatabaseIfEmpty();
+        ConnectionPool pool = DatabaseManager.pool();
+
+        // Batches of 500 committed every 1000 rows (1200 rounds down to whole batches), compactions of
+        // up to `records`: the default 2500 records are drained in three commits by one compaction.
+        Path dir = Files.createTempDirectory("txlog-check");
+        TransactionLog log = new TransactionLog(dir, pool, DatabaseManager.newIngestor(500, 1200), 1 << 20, 16,
+                records, 200);
+        List<TransactionRecord> in = new ArrayList<>(records);
+        DatabaseManager.mockRecords(records).forEachRemaining(in::add);
+        int poisonAt = records - records / 10;
+        TransactionRecord r = in.get(poisonAt);
+        in.set(poisonAt, new TransactionRecord(POISON_CUSTOMER, r.vendorId, r.amount, r.timestamp, r.location, r.status));
+
+        long before = countTransactions(pool);
+        log.appendAll(in.iterator());
+
+        setFault(pool, true);
+        try {
+            log.compactOnce();
+            System.out.println("compaction did not fail; the fault was not injected");
+        } catch (SQLException e) {
+            System.out.println("compaction failed as injected: " + e.getMessage());
+        }
+        long beforeRetry = countTransactions(pool) - before;
+        setFault(pool, false);
+        while (log.drainedSeq() < log.publishedSeq())
+            log.compactOnce();
+        long applied = countTransactions(pool) - before;
+        log.close();
+
+        RiskScoringEngine live = DatabaseManager.scoringEngine();
+        RiskScoringEngine fresh = new RiskScoringEngine(1024);
+        fresh.loadProfiles(pool);
+        Set<Integer> customers = new HashSet<>();
+        for (TransactionRecord t : in)
+            customers.add(t.customerId);
+        int drifted = 0;
+        for (int c : customers) {
+            double[] a = live.profile(c), b = fresh.profile(c);
+            if (a[0] != b[0] || Math.abs(a[1] - b[1]) > 1e-6 * Math.max(1, Math.abs(b[1])))
+                drifted++;
+        }
+
+        System.out.printf("%,d records: %,d committed before the failure, %,d applied after the retry (%s)%n",
+                records, beforeRetry, applied, applied == records ? "exact" : "MISMATCH");
+        System.out.printf("%,d customer profiles, %,d differ from the committed rows%n", customers.size(), drifted);
+        System.exit(applied == records && drifted == 0 ? 0 : 1);
+    }
+
+    // A temp trigger on the writer connection, so only this JVM's writes see the fault.
+    private static void setFault(ConnectionPool pool, boolean on) throws SQLException {
+        try (ConnectionPool.PooledConnection pc = pool.acquireWrite(); Statement stmt = pc.raw().createStatement()) {
+            stmt.execute(on
+                    ? "CREATE TEMP TRIGGER txlog_check_fault BEFORE INSERT ON main.transactions WHEN NEW.customer_id = "
+                            + POISON_CUSTOMER + " BEGIN SELECT RAISE(ABORT, 'injected fault'); END"
+                    : "DROP TRIGGER IF EXISTS temp.txlog_check_fault");
+        }
+    }
+
+    private static long countTransactions(ConnectionPool pool) throws SQLException {
+        try (ConnectionPool.PooledConnection pc = pool.acquireRead();
+                ResultSet rs = pc.prepare("SELECT COUNT(*) FROM transactions").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
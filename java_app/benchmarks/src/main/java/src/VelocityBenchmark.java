@@ -0,0 +1,167 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// windowAdd: VelocityWindow.add over millions of distinct keys with event time moving forward, capped at
+//            1,000,000 tracked keys; the keys, memory and evictions that leaves are printed per trial.
+// score:     RiskScoringEngine.score with and without the VelocityEngine.
+// ingest:    DatabaseManager.bulkInsert of bursty traffic with and without velocity rules.
+// Each shares one window / engine across threads: rerun with -t 2, 4, ... for the scaling.
+// VelocityWindowCheck checks the window totals against brute force.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VelocityBenchmark {
+    private static final long WINDOW_MS = 5 * 60_000;
+    private static final long START_MS = 1_700_000_000_000L;
+    private static final int KEY_SPACE = 5_000_000;
+    private static final int SAMPLE = 1 << 20; // power of two, cycled with a mask
+    private static final int INGEST_ROWS = 1000;
+
+    // One window for all threads; the keys, memory and evictions it ends up with are printed per trial.
+    @State(Scope.Benchmark)
+    public static class Window {
+        final VelocityWindow window = new VelocityWindow(WINDOW_MS, 1_000_000);
+
+        @TearDown
+        public void tearDown() {
+            System.out.printf("window: %,d keys, %.1f MB, %s%n", window.trackedKeys(), window.bytes() / 1e6,
+                    window.getMetrics());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Scoring {
+        @Param({ "false", "true" })
+        public boolean velocity;
+
+        private TransactionRecord[] events;
+        private RiskScoringEngine engine;
+
+        @Setup
+        public void setup() {
+            events = new TransactionRecord[SAMPLE];
+            SplittableRandom rnd = new SplittableRandom(1);
+            String[] locations = { "New York", "London", "Singapore", "Tokyo", "Berlin", "Unknown_Location" };
+            for (int i = 0; i < SAMPLE; i++) {
+                long t = START_MS + i * 20L; // 50 events/s
+                events[i] = new TransactionRecord(1 + rnd.nextInt(100_000), 1 + rnd.nextInt(6), 10 + rnd.nextInt(5000),
+                        Timestamps.format(t), locations[rnd.nextInt(locations.length)], "completed");
+            }
+            engine = new RiskScoringEngine(1 << 17);
+            engine.setVelocityEngine(velocity ? new VelocityEngine(WINDOW_MS, 10, 10000, 5000, 1_000_000) : null);
+        }
+    }
+
+    // Per-thread random keys and an event clock advancing 0.36 ms per event (10M events an hour).
+    @State(Scope.Thread)
+    public static class Cursor {
+        final SplittableRandom rnd = new SplittableRandom(Thread.currentThread().getId());
+        final long[] out = new long[2];
+        long events;
+        int next;
+    }
+
+    // A bench dataset with the velocity rules set on the server's engine; rows added in an iteration are
+    // deleted afterwards.
+    @State(Scope.Benchmark)
+    public static class Ingest {
+        @Param({ "false", "true" })
+        public boolean velocity;
+
+        @Param({ "100000" })
+        public long rows;
+
+        private VelocityEngine previous;
+        private long baseTransactionId;
+        private long baseResultId;
+
+        @Setup
+        public void setup() throws Exception {
+            BenchDatasets.open(rows);
+            baseTransactionId = BenchDatasets.maxTransactionId();
+            baseResultId = BenchDatasets.maxResultId();
+            RiskScoringEngine engine = DatabaseManager.scoringEngine();
+            previous = engine.velocityEngine();
+            engine.setVelocityEngine(
+                    velocity ? new VelocityEngine(WINDOW_MS, 10, 10000, 500_000, 1_000_000) : null);
+        }
+
+        @TearDown(Level.Iteration)
+        public void trim() throws Exception {
+            BenchDatasets.truncateAfter(baseTransactionId, baseResultId);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            VelocityEngine v = DatabaseManager.scoringEngine().velocityEngine();
+            if (v != null)
+                System.out.println("velocity " + v.getMetrics());
+            DatabaseManager.scoringEngine().setVelocityEngine(previous);
+            BenchDatasets.checkpoint();
+            DatabaseManager.pool().shutdown();
+        }
+    }
+
+    @Benchmark
+    public boolean windowAdd(Window w, Cursor c) {
+        long time = START_MS + c.events++ * 36 / 100;
+        return w.window.add(c.rnd.nextInt(KEY_SPACE), time, 1000, c.out);
+    }
+
+    // The sample wraps every 1M events (about 6 h of event time), after which the velocity rules see
+    // the same events again as late ones.
+    @Benchmark
+    public TransactionRecord score(Scoring s, Cursor c) {
+        TransactionRecord r = s.events[c.next++ & (SAMPLE - 1)];
+        return s.engine.score(new TransactionRecord(r.customerId, r.vendorId, r.amount, r.timestamp, r.location, r.status));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INGEST_ROWS)
+    public void ingest(Ingest ingest, Cursor c) throws Exception {
+        DatabaseManager.bulkInsert(burstyRecords(INGEST_ROWS, c.rnd).iterator());
+    }
+
+    // Records in event-time order from now on, 10 ms apart, over 100k customers; one in 50 of them is
+    // part of a burst of 15 from one customer within a few seconds.
+    private static List<TransactionRecord> burstyRecords(int count, SplittableRandom rnd) {
+        List<TransactionRecord> list = new ArrayList<>(count);
+        long base = System.currentTimeMillis();
+        int burstCustomer = 0, burstLeft = 0;
+        for (int i = 0; i < count; i++) {
+            if (burstLeft == 0 && rnd.nextInt(50 * 15) == 0) {
+                burstCustomer = 1 + rnd.nextInt(100_000);
+                burstLeft = 15;
+            }
+            int customer = 1 + rnd.nextInt(100_000);
+            if (burstLeft > 0) {
+                burstLeft--;
+                customer = burstCustomer;
+            }
+            list.add(new TransactionRecord(customer, 1 + rnd.nextInt(6),
+                    Math.round((10 + rnd.nextDouble() * 2000) * 100) / 100.0, Timestamps.format(base + i * 10L),
+                    "Berlin", "completed"));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,59 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// VelocityWindow totals against a brute-force per-key event list on out-of-order events; exits 1 on
+// any mismatch. Needs no database.
+// Usage: java -cp target/benchmarks.jar src.VelocityWindowCheck
+public class VelocityWindowCheck {
+    private static final long WINDOW_MS = 5 * 60_000;
+    private static final long START_MS = 1_700_000_000_000L;
+
+    public static void main(String[] args) {
+        System.exit(check() == 0 ? 0 : 1);
+    }
+
+    private static int check() {
+        VelocityWindow w = new VelocityWindow(WINDOW_MS, 1_000_000);
+        long bucketMs = WINDOW_MS / VelocityWindow.BUCKETS;
+        int keys = 500;
+        List<List<long[]>> history = new ArrayList<>(); // per key: {bucket, cents}
+        long[] head = new long[keys];
+        for (int k = 0; k < keys; k++)
+            history.add(new ArrayList<>());
+        SplittableRandom rnd = new SplittableRandom(7);
+        long[] out = new long[2];
+        int n = 200_000, mismatches = 0, late = 0;
+        for (int i = 0; i < n; i++) {
+            int key = rnd.nextInt(keys);
+            // Mostly advancing time with up to 6 minutes of jitter, so some events arrive late.
+            long t = START_MS + i * 50L - rnd.nextLong(6 * 60_000);
+            long cents = rnd.nextLong(1, 500_000);
+            boolean counted = w.add(key, t, cents, out);
+            long b = t / bucketMs;
+            boolean expectCounted = history.get(key).isEmpty() || b > head[key] - VelocityWindow.BUCKETS;
+            if (expectCounted) {
+                history.get(key).add(new long[] { b, cents });
+                head[key] = Math.max(head[key], b);
+                long count = 0, sum = 0;
+                for (long[] e : history.get(key)) {
+                    if (e[0] > head[key] - VelocityWindow.BUCKETS) {
+                        count++;
+                        sum += e[1];
+                    }
+                }
+                if (!counted || out[0] != count || out[1] != sum)
+                    mismatches++;
+            } else {
+                late++;
+                if (counted)
+                    mismatches++;
+            }
+        }
+        System.out.printf("check: %,d events on %d keys (%,d late), %d mismatches against brute force%n", n, keys,
+                late, mismatches);
+        return mismatches;
+    }
+}
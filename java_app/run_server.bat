@@ -1,7 +1,7 @@
 @echo off
 if not exist "bin" mkdir bin
 echo Compiling...
-javac -cp "lib/*;src" -d bin src/DatabaseManager.java src/RiskApiServer.java
+javac -cp "lib/*;src" -d bin src/*.java
 if %errorlevel% neq 0 exit /b %errorlevel%
 
 echo Starting Server...
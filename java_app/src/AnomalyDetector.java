@@ -0,0 +1,168 @@
+package src;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-process replacement for the ML step of risk_engine.py. Holds the current IsolationForest and
+// retrains it in the background on the newest `window` transactions; the new model is published
+// with a single volatile write, so scoring threads never wait on a retrain.
+public class AnomalyDetector {
+    public static final String ML_REASON = "ML Anomaly Detected";
+    private static final String WINDOW_QUERY = "SELECT amount, timestamp FROM transactions "
+            + "WHERE amount IS NOT NULL ORDER BY transaction_id DESC LIMIT ?";
+    // train_and_predict_ml only runs with more than 100 transactions.
+    private static final int MIN_TRAINING_ROWS = 101;
+
+    private static final Metrics.Timer APPLY_TIMER = Metrics.timer("iforest_score_seconds",
+            "Isolation Forest scoring of one event");
+    private static final Metrics.Timer RETRAIN_TIMER = Metrics.timer("iforest_retrain_seconds",
+            "Loading the window, training and swapping in a model");
+
+    private final ConnectionPool pool;
+    private final int window;
+    private final int trees;
+    private final long seed;
+    private volatile IsolationForest model;
+    private ScheduledExecutorService retrainer;
+
+    // Metrics
+    private final LongAdder scored = new LongAdder();
+    private final LongAdder anomalies = new LongAdder();
+    private final LongAdder scoringNanos = new LongAdder();
+    private volatile long retrains;
+    private volatile long lastTrainMillis;
+    private volatile double lastTrainMs;
+    private volatile int lastTrainRows;
+
+    public AnomalyDetector(ConnectionPool pool, int window, int trees, long seed) {
+        if (window < MIN_TRAINING_ROWS || trees <= 0)
+            throw new IllegalArgumentException("window must be at least " + MIN_TRAINING_ROWS + " and trees positive");
+        this.pool = pool;
+        this.window = window;
+        this.trees = trees;
+        this.seed = seed;
+    }
+
+    public IsolationForest model() {
+        return model;
+    }
+
+    // Replaces the live model, e.g. with one imported from sklearn.
+    public void setModel(IsolationForest model) {
+        this.model = model;
+    }
+
+    // Trains on the current window and swaps the model in. Returns false when there is too little data.
+    public synchronized boolean retrain() throws SQLException {
+        long start = System.nanoTime();
+        List<double[]> rows = new ArrayList<>(window);
+        try (ConnectionPool.PooledConnection pc = pool.acquireRead()) {
+            PreparedStatement ps = pc.prepare(WINDOW_QUERY);
+            ps.setInt(1, window);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    rows.add(IsolationForest.features(rs.getDouble(1), Timestamps.epochMillis(rs.getString(2))));
+            }
+        }
+        if (rows.size() < MIN_TRAINING_ROWS)
+            return false;
+        model = IsolationForest.train(rows.toArray(new double[0][]), trees, IsolationForest.DEFAULT_MAX_SAMPLES,
+                IsolationForest.DEFAULT_CONTAMINATION, seed + retrains);
+        retrains++;
+        lastTrainRows = rows.size();
+        lastTrainMs = (System.nanoTime() - start) / 1e6;
+        RETRAIN_TIMER.recordSince(start);
+        lastTrainMillis = System.currentTimeMillis();
+        return true;
+    }
+
+    // Trains once now, then every intervalSeconds on a daemon thread.
+    public synchronized void start(long intervalSeconds) {
+        if (retrainer != null)
+            return;
+        retrainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "iforest-retrain");
+            t.setDaemon(true);
+            return t;
+        });
+        retrainer.scheduleWithFixedDelay(() -> {
+            try {
+                retrain();
+            } catch (SQLException | RuntimeException e) {
+                System.out.println("Isolation Forest retrain failed: " + e.getMessage());
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (retrainer != null) {
+            retrainer.shutdownNow();
+            retrainer = null;
+        }
+    }
+
+    // Merges the model's verdict into a rule-scored record the way train_and_predict_ml does: an
+    // anomaly already flagged by the rules gets +20 (capped at 100) and an extra reason; one the rules
+    // passed becomes a 40-point MEDIUM finding. fraudProbability is |decision_function| for anomalies.
+    public TransactionRecord apply(TransactionRecord r) {
+        IsolationForest m = model;
+        if (m == null)
+            return r;
+        long start = System.nanoTime();
+        double decision = m.decisionFunction(IsolationForest.features(r));
+        if (decision < 0) {
+            merge(r, Math.round(Math.abs(decision) * 100) / 100.0);
+            anomalies.increment();
+        }
+        long elapsed = System.nanoTime() - start;
+        scoringNanos.add(elapsed);
+        APPLY_TIMER.record(elapsed);
+        scored.increment();
+        return r;
+    }
+
+    // Re-applies a stored ML finding (its fraud_probability, null for none) to a freshly scored record.
+    // Rescorer uses this rather than the live model, which was trained on recent rows, not the history.
+    static TransactionRecord carryOver(TransactionRecord r, Double probability) {
+        return probability == null ? r : merge(r, probability);
+    }
+
+    // A stored reason without its ML part, so the remaining findings parse as they were scored.
+    static String withoutFinding(String reason) {
+        if (reason == null || !reason.contains(ML_REASON))
+            return reason;
+        return reason.startsWith(ML_REASON) ? "" : reason.replace(" + " + ML_REASON, "");
+    }
+
+    private static TransactionRecord merge(TransactionRecord r, double probability) {
+        if (r.riskScore > 0)
+            return r.withRisk(Math.min(r.riskScore + 20, 100), r.riskLevel, r.reason + " + " + ML_REASON, probability);
+        return r.withRisk(40, "MEDIUM", ML_REASON + " (Isolation Forest)", probability);
+    }
+
+    public Map<String, Object> getMetrics() {
+        IsolationForest m = model;
+        long n = scored.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("trained", m != null);
+        out.put("trees", m == null ? 0 : m.trees());
+        out.put("nodes", m == null ? 0 : m.nodes());
+        out.put("retrains", retrains);
+        out.put("lastTrainRows", lastTrainRows);
+        out.put("lastTrainMs", lastTrainMs);
+        out.put("lastTrainMillis", lastTrainMillis);
+        out.put("scored", n);
+        out.put("anomalies", anomalies.sum());
+        out.put("avgScoreMicros", n == 0 ? 0.0 : scoringNanos.sum() / 1000.0 / n);
+        return out;
+    }
+}
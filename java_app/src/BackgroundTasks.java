@@ -0,0 +1,74 @@
+package src;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Small bounded queue for fire-and-forget work (e.g. the Python analysis call).
+// Submitting a task whose key is already queued is a no-op, so bursts of clicks coalesce.
+public class BackgroundTasks {
+    private final ThreadPoolExecutor executor;
+    private final Set<String> queuedKeys = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public BackgroundTasks(String name, int threads, int queueSize) {
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public boolean submit(String key, Runnable task) {
+        if (!queuedKeys.add(key)) {
+            coalesced.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                queuedKeys.remove(key);
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    System.err.println("Background task " + key + " failed: " + e.getMessage());
+                }
+            });
+            submitted.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            queuedKeys.remove(key);
+            rejected.increment();
+            System.err.println("Background queue full, dropping " + key);
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("active", executor.getActiveCount());
+        m.put("queued", executor.getQueue().size());
+        m.put("submitted", submitted.sum());
+        m.put("coalesced", coalesced.sum());
+        m.put("rejected", rejected.sum());
+        m.put("failed", failed.sum());
+        return m;
+    }
+}
@@ -0,0 +1,215 @@
+package src;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Batched, chunk-committed writer for transactions + risk_results.
+// Records arriving without a verdict are scored inline by the RiskScoringEngine.
+// The writer lease is released between commits so other writers are not starved by a long replay.
+// With rollups enabled, each chunk's aggregates are upserted into the RiskRollups tables before its commit.
+// Scoring folds records into the engine's customer profiles before their chunk commits; when a chunk
+// rolls back, the profiles of its customers are reloaded from the committed rows and its records lose
+// the verdicts scored here, so a retry scores them again. Velocity windows are not rolled back.
+public class BulkIngestor {
+    private static final String INSERT_TX = "INSERT INTO transactions (customer_id, vendor_id, amount, timestamp, location, status) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_RISK = "INSERT INTO risk_results (transaction_id, risk_score, risk_level, reason, fraud_probability, timestamp) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final Metrics.Timer BATCH_TIMER = Metrics.timer("ingest_batch_seconds",
+            "Writing one batch of transactions and risk results (before commit)");
+    private static final Metrics.Timer COMMIT_TIMER = Metrics.timer("ingest_commit_seconds",
+            "Rollup flush, commit hook and commit of one chunk");
+    private static final Metrics.Timer WRITER_WAIT_TIMER = Metrics.timer("ingest_writer_wait_seconds",
+            "Waiting for the writer lease before a chunk");
+    private static final Metrics.Counter ROWS = Metrics.counter("ingest_rows_total", "Transactions committed by ingest");
+
+    private final ConnectionPool pool;
+    private final RiskScoringEngine scorer; // may be null
+    private final int batchSize;
+    private final int commitInterval;
+    private final List<IngestListener> listeners;
+    private final boolean rollups;
+
+    public BulkIngestor(ConnectionPool pool, RiskScoringEngine scorer, int batchSize, int commitInterval) {
+        this(pool, scorer, batchSize, commitInterval, Collections.emptyList());
+    }
+
+    public BulkIngestor(ConnectionPool pool, RiskScoringEngine scorer, int batchSize, int commitInterval,
+            List<IngestListener> listeners) {
+        this(pool, scorer, batchSize, commitInterval, listeners, false);
+    }
+
+    public BulkIngestor(ConnectionPool pool, RiskScoringEngine scorer, int batchSize, int commitInterval,
+            List<IngestListener> listeners, boolean rollups) {
+        if (batchSize <= 0 || commitInterval <= 0)
+            throw new IllegalArgumentException("batchSize and commitInterval must be positive");
+        this.pool = pool;
+        this.scorer = scorer;
+        this.batchSize = batchSize;
+        // A commit always covers whole batches.
+        this.commitInterval = Math.max(batchSize, commitInterval - commitInterval % batchSize);
+        this.listeners = listeners;
+        this.rollups = rollups;
+    }
+
+    // Runs on the writer connection just before each chunk commits, with the number of records
+    // written by this ingest() call including the chunk, so callers can persist progress atomically.
+    public interface CommitHook {
+        void beforeCommit(ConnectionPool.PooledConnection writer, long writtenIncludingChunk) throws SQLException;
+    }
+
+    public long ingest(Stream<TransactionRecord> records) throws SQLException {
+        return ingest(records.iterator());
+    }
+
+    // Returns the number of transactions written. Each record gets its transactionId filled in.
+    public long ingest(Iterator<TransactionRecord> records) throws SQLException {
+        return ingest(records, null);
+    }
+
+    public long ingest(Iterator<TransactionRecord> records, CommitHook hook) throws SQLException {
+        long written = 0;
+        List<TransactionRecord> batch = new ArrayList<>(batchSize);
+        List<TransactionRecord> chunk = listeners.isEmpty() ? null : new ArrayList<>(commitInterval);
+        RiskRollups.Delta delta = rollups ? new RiskRollups.Delta() : null;
+        List<TransactionRecord> scored = scorer == null ? null : new ArrayList<>(commitInterval);
+
+        while (records.hasNext()) {
+            long waitStart = System.nanoTime();
+            try (ConnectionPool.PooledConnection pc = pool.acquireWrite()) {
+                WRITER_WAIT_TIMER.recordSince(waitStart);
+                Connection conn = pc.raw();
+                conn.setAutoCommit(false);
+                PreparedStatement insertTx = pc.prepareWithKeys(INSERT_TX);
+                PreparedStatement insertRisk = pc.prepare(INSERT_RISK);
+
+                int inChunk = 0;
+                if (chunk != null)
+                    chunk.clear();
+                if (scored != null)
+                    scored.clear();
+                long commitStart;
+                try {
+                    while (inChunk < commitInterval && records.hasNext()) {
+                        batch.clear();
+                        while (batch.size() < batchSize && records.hasNext())
+                            batch.add(records.next());
+                        long batchStart = System.nanoTime();
+                        writeBatch(batch, insertTx, insertRisk, scored);
+                        BATCH_TIMER.recordSince(batchStart);
+                        if (delta != null) {
+                            for (TransactionRecord r : batch)
+                                delta.add(r);
+                        }
+                        inChunk += batch.size();
+                        if (chunk != null)
+                            chunk.addAll(batch);
+                    }
+                    commitStart = System.nanoTime();
+                    if (delta != null)
+                        delta.flush(pc);
+                    if (hook != null)
+                        hook.beforeCommit(pc, written + inChunk);
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                    if (scored != null && !scored.isEmpty())
+                        unscore(pc, scored, e);
+                    throw e;
+                }
+                conn.setAutoCommit(true);
+                COMMIT_TIMER.recordSince(commitStart);
+                ROWS.add(inChunk);
+                written += inChunk;
+
+                if (chunk != null) {
+                    List<TransactionRecord> committed = Collections.unmodifiableList(chunk);
+                    for (IngestListener l : listeners) {
+                        try {
+                            l.onCommit(committed);
+                        } catch (RuntimeException e) {
+                            System.out.println("Ingest listener failed: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+    // Still holding the writer lease, so no other chunk scores or commits in between.
+    private void unscore(ConnectionPool.PooledConnection writer, List<TransactionRecord> scored, Exception cause) {
+        try {
+            scorer.reloadProfiles(writer, scored);
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+        for (TransactionRecord r : scored)
+            r.withRisk(0, null, null, 0);
+    }
+
+    private void writeBatch(List<TransactionRecord> batch, PreparedStatement insertTx, PreparedStatement insertRisk,
+            List<TransactionRecord> scored) throws SQLException {
+        for (TransactionRecord r : batch) {
+            if (scorer != null && !r.hasRisk()) {
+                scorer.score(r);
+                scored.add(r);
+            }
+            insertTx.setInt(1, r.customerId);
+            insertTx.setInt(2, r.vendorId);
+            insertTx.setDouble(3, r.amount);
+            insertTx.setString(4, r.timestamp);
+            insertTx.setString(5, r.location);
+            insertTx.setString(6, r.status);
+            insertTx.addBatch();
+        }
+        insertTx.executeBatch();
+        assignIds(batch, insertTx);
+
+        boolean anyRisk = false;
+        for (TransactionRecord r : batch) {
+            if (!r.hasRisk())
+                continue;
+            insertRisk.setLong(1, r.transactionId);
+            insertRisk.setDouble(2, r.riskScore);
+            insertRisk.setString(3, r.riskLevel);
+            insertRisk.setString(4, r.reason);
+            insertRisk.setDouble(5, r.fraudProbability);
+            insertRisk.setString(6, r.timestamp);
+            insertRisk.addBatch();
+            anyRisk = true;
+        }
+        if (anyRisk)
+            insertRisk.executeBatch();
+    }
+
+    // sqlite-jdbc only reports the last rowid of a batch. Inside one transaction on the single
+    // writer connection the rowids are consecutive, so the rest are derived from it.
+    private static void assignIds(List<TransactionRecord> batch, PreparedStatement insertTx) throws SQLException {
+        List<Long> keys = new ArrayList<>();
+        try (ResultSet rs = insertTx.getGeneratedKeys()) {
+            while (rs.next())
+                keys.add(rs.getLong(1));
+        }
+        int n = batch.size();
+        if (keys.size() == n) {
+            for (int i = 0; i < n; i++)
+                batch.get(i).transactionId = keys.get(i);
+        } else if (!keys.isEmpty()) {
+            long last = keys.get(keys.size() - 1);
+            for (int i = 0; i < n; i++)
+                batch.get(i).transactionId = last - (n - 1 - i);
+        } else {
+            throw new SQLException("Driver returned no generated keys for batch of " + n);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package src;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Column-oriented in-memory copy of `transactions` for scans that would otherwise materialize a
+// row object per transaction. Each column is a primitive array (amount double, timestamp epoch
+// millis, vendor int, customer dictionary-encoded as a dense int, location and vendor category
+// dictionary-encoded as short), so a scan is a tight loop over contiguous memory that C2 can unroll
+// and, where there is no indirection, vectorize. refresh() appends rows with transaction_id above
+// the last one loaded.
+//
+// One thread refreshes; any number may scan. A scan works on the Columns published at its start
+// and sees a consistent prefix of the table.
+public class ColumnarSnapshot {
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final String REFRESH_QUERY = "SELECT t.transaction_id, t.customer_id, t.vendor_id, t.amount, t.timestamp, t.location, v.category "
+            + "FROM transactions t LEFT JOIN vendors v ON t.vendor_id = v.vendor_id "
+            + "WHERE t.transaction_id > ? ORDER BY t.transaction_id LIMIT ?";
+    private static final int REFRESH_PAGE = 100_000;
+
+    // Immutable view: the arrays may be longer than size, and rows below size never change.
+    public static final class Columns {
+        public final int size;
+        public final long[] ids;
+        public final double[] amounts; // NaN for NULL
+        public final long[] timestamps; // epoch millis, Timestamps.NONE for NULL
+        public final int[] customers; // codes into customerIds, -1 = NULL
+        public final int[] vendors;
+        public final short[] locations; // codes into locationDictionary(), 0 = NULL
+        public final short[] categories; // codes into categoryDictionary(), 0 = NULL
+        public final int[] customerIds; // customer id by code, first customerCount entries
+        public final int customerCount;
+
+        Columns(int size, long[] ids, double[] amounts, long[] timestamps, int[] customers, int[] vendors,
+                short[] locations, short[] categories, int[] customerIds, int customerCount) {
+            this.size = size;
+            this.ids = ids;
+            this.amounts = amounts;
+            this.timestamps = timestamps;
+            this.customers = customers;
+            this.vendors = vendors;
+            this.locations = locations;
+            this.categories = categories;
+            this.customerIds = customerIds;
+            this.customerCount = customerCount;
+        }
+    }
+
+    // String -> short code; code 0 is NULL. Only the refreshing thread adds codes, but scans look
+    // them up concurrently.
+    private static final class Dictionary {
+        private final Map<String, Short> codes = new ConcurrentHashMap<>();
+        private volatile List<String> values = List.of();
+
+        short encode(String s) {
+            if (s == null)
+                return 0;
+            Short code = codes.get(s);
+            if (code != null)
+                return code;
+            if (codes.size() >= Short.MAX_VALUE)
+                throw new IllegalStateException("Too many distinct values for a short dictionary");
+            List<String> next = new ArrayList<>(values);
+            next.add(s);
+            values = List.copyOf(next);
+            code = (short) next.size();
+            codes.put(s, code);
+            return code;
+        }
+
+        // -1 when the value has never been seen, which matches no row.
+        short lookup(String s) {
+            Short code = codes.get(s);
+            return code == null ? -1 : code;
+        }
+
+        String decode(short code) {
+            return code == 0 ? null : values.get(code - 1);
+        }
+
+        long bytes() {
+            long b = 0;
+            for (String s : values)
+                b += 40 + 2L * s.length();
+            return b;
+        }
+    }
+
+    private final Dictionary locationDictionary = new Dictionary();
+    private final Dictionary categoryDictionary = new Dictionary();
+    private final Map<Integer, Integer> customerCodes = new HashMap<>(); // refreshing thread only
+    private volatile Columns columns = new Columns(0, new long[0], new double[0], new long[0], new int[0], new int[0],
+            new short[0], new short[0], new int[0], 0);
+    private long lastId;
+
+    // Metrics
+    private long refreshes;
+    private long refreshedRows;
+    private long refreshNanos;
+
+    public Columns columns() {
+        return columns;
+    }
+
+    public String location(short code) {
+        return locationDictionary.decode(code);
+    }
+
+    public String category(short code) {
+        return categoryDictionary.decode(code);
+    }
+
+    // Loads every transaction above the last loaded id. Returns the number of rows added.
+    public synchronized long refresh(ConnectionPool pool) throws SQLException {
+        long start = System.nanoTime();
+        Columns c = columns;
+        int size = c.size;
+        long[] ids = c.ids;
+        double[] amounts = c.amounts;
+        long[] timestamps = c.timestamps;
+        int[] customers = c.customers;
+        int[] vendors = c.vendors;
+        short[] locations = c.locations;
+        short[] categories = c.categories;
+        int[] customerIds = c.customerIds;
+        int customerCount = c.customerCount;
+
+        long added = 0;
+        try (ConnectionPool.PooledConnection pc = pool.acquireRead()) {
+            PreparedStatement ps = pc.prepare(REFRESH_QUERY);
+            int page;
+            do {
+                ps.setLong(1, lastId);
+                ps.setInt(2, REFRESH_PAGE);
+                page = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (size == ids.length) {
+                            int cap = Math.max(INITIAL_CAPACITY, ids.length + (ids.length >> 1));
+                            ids = Arrays.copyOf(ids, cap);
+                            amounts = Arrays.copyOf(amounts, cap);
+                            timestamps = Arrays.copyOf(timestamps, cap);
+                            customers = Arrays.copyOf(customers, cap);
+                            vendors = Arrays.copyOf(vendors, cap);
+                            locations = Arrays.copyOf(locations, cap);
+                            categories = Arrays.copyOf(categories, cap);
+                        }
+                        lastId = rs.getLong(1);
+                        ids[size] = lastId;
+                        int customer = rs.getInt(2);
+                        if (rs.wasNull()) {
+                            customers[size] = -1;
+                        } else {
+                            Integer code = customerCodes.get(customer);
+                            if (code == null) {
+                                if (customerCount == customerIds.length)
+                                    customerIds = Arrays.copyOf(customerIds,
+                                            Math.max(1024, customerCount + (customerCount >> 1)));
+                                customerIds[customerCount] = customer;
+                                code = customerCount++;
+                                customerCodes.put(customer, code);
+                            }
+                            customers[size] = code;
+                        }
+                        vendors[size] = rs.getInt(3);
+                        double amount = rs.getDouble(4);
+                        amounts[size] = rs.wasNull() ? Double.NaN : amount;
+                        timestamps[size] = Timestamps.epochMillis(rs.getString(5));
+                        locations[size] = locationDictionary.encode(rs.getString(6));
+                        categories[size] = categoryDictionary.encode(rs.getString(7));
+                        size++;
+                        page++;
+                    }
+                }
+                added += page;
+            } while (page == REFRESH_PAGE);
+        }
+
+        if (added > 0)
+            columns = new Columns(size, ids, amounts, timestamps, customers, vendors, locations, categories, customerIds,
+                    customerCount);
+        refreshes++;
+        refreshedRows += added;
+        refreshNanos += System.nanoTime() - start;
+        return added;
+    }
+
+    // Per-customer count, mean and M2 (sum of squared deviations), indexed by customer code; ids[k] is
+    // the customer id of code k.
+    public static final class Profiles {
+        public final int[] ids;
+        public final long[] counts;
+        public final double[] means;
+        public final double[] m2s;
+
+        Profiles(int[] ids, int customers) {
+            this.ids = Arrays.copyOf(ids, customers);
+            counts = new long[customers];
+            means = new double[customers];
+            m2s = new double[customers];
+        }
+    }
+
+    // Group-by-customer over the amount column. Uses sums of amounts and squares per customer
+    // (one pass, no per-row branching) rather than Welford, which is fine at these magnitudes.
+    public Profiles customerProfiles() {
+        Columns c = columns;
+        int n = c.size;
+        Profiles p = new Profiles(c.customerIds, c.customerCount);
+        double[] sums = new double[c.customerCount];
+        double[] sumSq = new double[c.customerCount];
+        int[] cust = c.customers;
+        double[] amt = c.amounts;
+        for (int i = 0; i < n; i++) {
+            double a = amt[i];
+            if (a != a || cust[i] < 0)
+                continue; // NaN = NULL amount, -1 = NULL customer
+            int k = cust[i];
+            p.counts[k]++;
+            sums[k] += a;
+            sumSq[k] += a * a;
+        }
+        for (int k = 0; k < p.counts.length; k++) {
+            long cnt = p.counts[k];
+            if (cnt == 0)
+                continue;
+            double mean = sums[k] / cnt;
+            p.means[k] = mean;
+            p.m2s[k] = Math.max(0, sumSq[k] - cnt * mean * mean);
+        }
+        return p;
+    }
+
+    // Applies RiskScoringEngine's rules to every row against per-customer means indexed by customer code
+    // (as in customerProfiles()), writing the score of row i to scores[i]. Returns the number of rows
+    // per level (CRITICAL, HIGH, MEDIUM, LOW).
+    // Each rule is its own pass so the round-number and location passes stay free of indirection.
+    public long[] ruleScan(double[] meanByCustomer, byte[] scores) {
+        Columns c = columns;
+        int n = c.size;
+        if (scores.length < n)
+            throw new IllegalArgumentException("scores must hold " + n + " rows");
+        double[] amt = c.amounts;
+        int[] cust = c.customers;
+        short[] loc = c.locations;
+        short unknown = locationDictionary.lookup(RiskScoringEngine.SUSPICIOUS_LOCATION);
+
+        // Rule 2: large round amounts
+        for (int i = 0; i < n; i++) {
+            double a = amt[i];
+            scores[i] = (byte) (a > RiskScoringEngine.ROUND_AMOUNT_MIN && a % 100 == 0 ? 20 : 0);
+        }
+        // Rule 3: suspicious location
+        for (int i = 0; i < n; i++)
+            scores[i] += (byte) (loc[i] == unknown ? 30 : 0);
+        // Rule 1: amount far above the customer's mean
+        for (int i = 0; i < n; i++) {
+            int k = cust[i];
+            double avg = k >= 0 && k < meanByCustomer.length ? meanByCustomer[k] : 0;
+            scores[i] += (byte) (amt[i] > avg * RiskScoringEngine.AMOUNT_MULTIPLIER
+                    && avg > RiskScoringEngine.MIN_SIGNIFICANT_AVG ? 50 : 0);
+        }
+
+        long[] levels = new long[4];
+        for (int i = 0; i < n; i++) {
+            int s = scores[i];
+            levels[s >= 80 ? 0 : s >= 50 ? 1 : s >= 20 ? 2 : 3]++;
+        }
+        return levels;
+    }
+
+    // Sum of amounts with fromMillis <= timestamp < toMillis (vectorizable: no indirection).
+    public double sumAmount(long fromMillis, long toMillis) {
+        Columns c = columns;
+        double[] amt = c.amounts;
+        long[] ts = c.timestamps;
+        double sum = 0;
+        for (int i = 0; i < c.size; i++) {
+            long t = ts[i];
+            double a = amt[i];
+            sum += t >= fromMillis && t < toMillis && a == a ? a : 0.0;
+        }
+        return sum;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Columns c = columns;
+        long capacity = c.ids.length;
+        // 8 (id) + 8 (amount) + 8 (timestamp) + 4 (customer) + 4 (vendor) + 2 (location) + 2 (category)
+        long columnBytes = capacity * 36;
+        // Customer dictionary: 4 per id, ~64 per boxed HashMap entry
+        long dictBytes = locationDictionary.bytes() + categoryDictionary.bytes() + c.customerIds.length * 4L
+                + c.customerCount * 64L;
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("rows", c.size);
+        m.put("capacity", capacity);
+        m.put("bytes", columnBytes + dictBytes);
+        m.put("bytesPerRow", c.size == 0 ? 0.0 : (columnBytes + dictBytes) / (double) c.size);
+        m.put("mbPerMillionRows", c.size == 0 ? 0.0 : (c.size * 36.0 + dictBytes) / c.size * 1e6 / (1 << 20));
+        m.put("customers", c.customerCount);
+        m.put("locations", locationDictionary.values.size());
+        m.put("categories", categoryDictionary.values.size());
+        m.put("lastId", lastId);
+        m.put("refreshes", refreshes);
+        m.put("refreshedRows", refreshedRows);
+        m.put("refreshMs", refreshNanos / 1e6);
+        return m;
+    }
+}
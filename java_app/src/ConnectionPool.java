@@ -0,0 +1,286 @@
+package src;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded SQLite pool: one writer connection and up to N read-only connections.
+// WAL mode lets the readers keep serving while the writer holds the write lock.
+public class ConnectionPool {
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final int maxReaders;
+    private final long acquireTimeoutMs;
+
+    private final BlockingQueue<PooledConnection> idleReaders;
+    private final AtomicInteger openedReaders = new AtomicInteger();
+    private final AtomicInteger activeReaders = new AtomicInteger();
+
+    private final Semaphore writerPermit = new Semaphore(1, true);
+    private PooledConnection writer;
+
+    // Metrics
+    private final LongAdder readAcquires = new LongAdder();
+    private final LongAdder writeAcquires = new LongAdder();
+    private final LongAdder readWaitNanos = new LongAdder();
+    private final LongAdder writeWaitNanos = new LongAdder();
+    private final LongAccumulator maxReadWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxWriteWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    public ConnectionPool(String url, int maxReaders, long acquireTimeoutMs) {
+        this.url = url;
+        this.maxReaders = Math.max(1, maxReaders);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleReaders = new ArrayBlockingQueue<>(this.maxReaders);
+    }
+
+    public PooledConnection acquireRead() throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection pc = idleReaders.poll();
+        if (pc == null) {
+            pc = openReaderIfBelowLimit();
+        }
+        if (pc == null) {
+            try {
+                pc = idleReaders.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for read connection", e);
+            }
+            if (pc == null) {
+                timeouts.increment();
+                throw new SQLException("Timed out after " + acquireTimeoutMs + "ms waiting for read connection");
+            }
+        }
+        long waited = System.nanoTime() - start;
+        readAcquires.increment();
+        readWaitNanos.add(waited);
+        maxReadWaitNanos.accumulate(waited);
+        activeReaders.incrementAndGet();
+        pc.closed = false;
+        return pc;
+    }
+
+    public PooledConnection acquireWrite() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!writerPermit.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLException("Timed out after " + acquireTimeoutMs + "ms waiting for write connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for write connection", e);
+        }
+        try {
+            if (writer == null || writer.conn.isClosed()) {
+                writer = new PooledConnection(open(false), false);
+            }
+        } catch (SQLException e) {
+            writerPermit.release();
+            throw e;
+        }
+        long waited = System.nanoTime() - start;
+        writeAcquires.increment();
+        writeWaitNanos.add(waited);
+        maxWriteWaitNanos.accumulate(waited);
+        writer.closed = false;
+        return writer;
+    }
+
+    private PooledConnection openReaderIfBelowLimit() throws SQLException {
+        while (true) {
+            int opened = openedReaders.get();
+            if (opened >= maxReaders)
+                return null;
+            if (openedReaders.compareAndSet(opened, opened + 1)) {
+                try {
+                    return new PooledConnection(open(true), true);
+                } catch (SQLException e) {
+                    openedReaders.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Connection open(boolean readOnly) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            stmt.execute("PRAGMA busy_timeout=5000");
+            stmt.execute("PRAGMA cache_size=-16384"); // 16 MB page cache per connection
+            stmt.execute("PRAGMA mmap_size=268435456"); // 256 MB
+            stmt.execute("PRAGMA temp_store=MEMORY");
+            if (readOnly)
+                stmt.execute("PRAGMA query_only=1");
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    private void release(PooledConnection pc) {
+        try {
+            if (!pc.conn.getAutoCommit()) {
+                pc.conn.rollback();
+                pc.conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            pc.discard();
+        }
+
+        if (!pc.readOnly) {
+            if (pc.discarded)
+                writer = null;
+            writerPermit.release();
+            return;
+        }
+
+        activeReaders.decrementAndGet();
+        if (pc.discarded || !idleReaders.offer(pc)) {
+            pc.discard();
+            openedReaders.decrementAndGet();
+        }
+    }
+
+    public void shutdown() {
+        PooledConnection pc;
+        while ((pc = idleReaders.poll()) != null) {
+            pc.discard();
+            openedReaders.decrementAndGet();
+        }
+        if (writerPermit.tryAcquire()) {
+            if (writer != null)
+                writer.discard();
+            writer = null;
+            writerPermit.release();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long reads = readAcquires.sum();
+        long writes = writeAcquires.sum();
+        m.put("readersMax", maxReaders);
+        m.put("readersOpen", openedReaders.get());
+        m.put("readersActive", activeReaders.get());
+        m.put("readersIdle", idleReaders.size());
+        m.put("writerActive", writerPermit.availablePermits() == 0);
+        m.put("writerQueued", writerPermit.getQueueLength());
+        m.put("readAcquires", reads);
+        m.put("writeAcquires", writes);
+        m.put("readWaitAvgMicros", reads == 0 ? 0.0 : readWaitNanos.sum() / 1000.0 / reads);
+        m.put("readWaitMaxMicros", maxReadWaitNanos.get() / 1000.0);
+        m.put("writeWaitAvgMicros", writes == 0 ? 0.0 : writeWaitNanos.sum() / 1000.0 / writes);
+        m.put("writeWaitMaxMicros", maxWriteWaitNanos.get() / 1000.0);
+        m.put("acquireTimeouts", timeouts.sum());
+        m.put("statementCacheHits", statementCacheHits.sum());
+        m.put("statementCacheMisses", statementCacheMisses.sum());
+        return m;
+    }
+
+    // A leased connection. close() hands it back to the pool instead of closing it.
+    public class PooledConnection implements AutoCloseable {
+        private final Connection conn;
+        private final boolean readOnly;
+        private boolean discarded;
+        // Per lease: the wrapper is reused, so a second close() must not release the lease again.
+        private boolean closed;
+
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16,
+                0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        private PooledConnection(Connection conn, boolean readOnly) {
+            this.conn = conn;
+            this.readOnly = readOnly;
+        }
+
+        public Connection raw() {
+            return conn;
+        }
+
+        // Cached per connection; callers close their ResultSets but never the statement itself.
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return cached(sql, false);
+        }
+
+        public PreparedStatement prepareWithKeys(String sql) throws SQLException {
+            return cached(sql, true);
+        }
+
+        private PreparedStatement cached(String sql, boolean generatedKeys) throws SQLException {
+            String key = generatedKeys ? "KEYS:" + sql : sql;
+            PreparedStatement ps = statements.get(key);
+            if (ps != null && !ps.isClosed()) {
+                try {
+                    ps.clearParameters();
+                    ps.clearBatch();
+                    statementCacheHits.increment();
+                    return ps;
+                } catch (SQLException e) {
+                    // The driver can leave a statement unusable after an error; re-prepare it.
+                    statements.remove(key);
+                    closeQuietly(ps);
+                }
+            }
+            statementCacheMisses.increment();
+            ps = generatedKeys ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql);
+            statements.put(key, ps);
+            return ps;
+        }
+
+        private void discard() {
+            discarded = true;
+            for (PreparedStatement ps : statements.values())
+                closeQuietly(ps);
+            statements.clear();
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            release(this);
+        }
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
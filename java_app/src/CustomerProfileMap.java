@@ -0,0 +1,149 @@
+package src;
+
+// Open-addressing int -> running (count, mean, M2) table backed by parallel primitive arrays.
+// Not thread-safe; RiskScoringEngine guards it.
+public class CustomerProfileMap {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private long[] counts; // 0 marks an empty slot
+    private double[] means;
+    private double[] m2s;
+    private int size;
+    private int mask;
+
+    public CustomerProfileMap(int expectedCustomers) {
+        int cap = Integer.highestOneBit(Math.max(16, (int) (expectedCustomers / LOAD_FACTOR)) - 1) << 1;
+        allocate(cap);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        counts = new long[capacity];
+        means = new double[capacity];
+        m2s = new double[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Slot of key, or -1 when absent.
+    public int find(int key) {
+        int i = hash(key) & mask;
+        while (counts[i] != 0) {
+            if (keys[i] == key)
+                return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Welford's update; returns the slot so callers can read the refreshed profile.
+    public int add(int key, double value) {
+        int i = hash(key) & mask;
+        while (counts[i] != 0 && keys[i] != key)
+            i = (i + 1) & mask;
+
+        if (counts[i] == 0) {
+            if (size + 1 > (mask + 1) * LOAD_FACTOR) {
+                rehash();
+                return add(key, value);
+            }
+            keys[i] = key;
+            size++;
+        }
+
+        long n = ++counts[i];
+        double delta = value - means[i];
+        means[i] += delta / n;
+        m2s[i] += delta * (value - means[i]);
+        return i;
+    }
+
+    // Seeds a profile from aggregates (count, mean, sum of squared deviations).
+    public void put(int key, long count, double mean, double m2) {
+        if (count <= 0)
+            return;
+        int i = hash(key) & mask;
+        while (counts[i] != 0 && keys[i] != key)
+            i = (i + 1) & mask;
+        if (counts[i] == 0) {
+            if (size + 1 > (mask + 1) * LOAD_FACTOR) {
+                rehash();
+                put(key, count, mean, m2);
+                return;
+            }
+            keys[i] = key;
+            size++;
+        }
+        counts[i] = count;
+        means[i] = mean;
+        m2s[i] = Math.max(0, m2);
+    }
+
+    // Backward-shift deletion, so probe chains stay intact without tombstones.
+    public void remove(int key) {
+        int i = find(key);
+        if (i < 0)
+            return;
+        for (int j = (i + 1) & mask; counts[j] != 0; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            // Entry j may move into the hole unless its home lies cyclically in (i, j].
+            boolean stays = i < j ? home > i && home <= j : home > i || home <= j;
+            if (!stays) {
+                keys[i] = keys[j];
+                counts[i] = counts[j];
+                means[i] = means[j];
+                m2s[i] = m2s[j];
+                i = j;
+            }
+        }
+        counts[i] = 0;
+        size--;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        long[] oldCounts = counts;
+        double[] oldMeans = means;
+        double[] oldM2s = m2s;
+        allocate(oldKeys.length << 1);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldCounts[j] == 0)
+                continue;
+            int i = hash(oldKeys[j]) & mask;
+            while (counts[i] != 0)
+                i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            counts[i] = oldCounts[j];
+            means[i] = oldMeans[j];
+            m2s[i] = oldM2s[j];
+        }
+    }
+
+    public long count(int slot) {
+        return counts[slot];
+    }
+
+    public double mean(int slot) {
+        return means[slot];
+    }
+
+    // Sample standard deviation (ddof=1, same as pandas); NaN below two observations.
+    public double std(int slot) {
+        long n = counts[slot];
+        return n < 2 ? Double.NaN : Math.sqrt(m2s[slot] / (n - 1));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(counts, 0);
+        size = 0;
+    }
+}
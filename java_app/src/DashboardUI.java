@@ -3,13 +3,17 @@ package src;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.Statement;
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
 
 public class DashboardUI extends JFrame {
     private JTable table;
-    private DefaultTableModel tableModel;
+    private static final int PRINT_ROWS = 1000;
+
+    private TransactionTableModel tableModel;
     private JLabel statusLabel;
 
     public DashboardUI() {
@@ -37,40 +41,38 @@ public class DashboardUI extends JFrame {
         JButton exportBtn = new JButton("Print / Export to PDF");
         exportBtn.setBackground(new Color(220, 53, 69)); // Reddish for PDF
         exportBtn.setForeground(Color.WHITE);
-        exportBtn.addActionListener(e -> {
-            try {
-                boolean complete = table.print(JTable.PrintMode.FIT_WIDTH,
-                        new java.text.MessageFormat("Fraud Detection Report"),
-                        new java.text.MessageFormat("Page - {0}"));
-                if (complete) {
-                    JOptionPane.showMessageDialog(this, "Printing Complete", "Result", JOptionPane.INFORMATION_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(this, "Printing Cancelled", "Result",
-                            JOptionPane.INFORMATION_MESSAGE);
-                }
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "Printing Failed: " + ex.getMessage());
-            }
-        });
+        exportBtn.addActionListener(e -> printReport());
+        JButton csvBtn = new JButton("Export CSV");
+        csvBtn.addActionListener(e -> exportCsv());
 
         JButton simBtn = new JButton("Simulate Traffic (+10)");
         simBtn.setBackground(new Color(70, 130, 180));
         simBtn.setForeground(Color.WHITE);
-        simBtn.addActionListener(e -> {
-            DatabaseManager.addMockData(10);
-            loadData();
-            JOptionPane.showMessageDialog(this, "Added 10 new transactions!");
-        });
+        simBtn.addActionListener(e -> new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                DatabaseManager.addMockData(10);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                loadData();
+                JOptionPane.showMessageDialog(DashboardUI.this, "Added 10 new transactions!");
+            }
+        }.execute());
 
+        statusLabel = new JLabel(" ");
         controlPanel.add(refreshBtn);
         controlPanel.add(simBtn);
         controlPanel.add(exportBtn);
+        controlPanel.add(csvBtn);
+        controlPanel.add(statusLabel);
         add(controlPanel, BorderLayout.SOUTH);
 
-        // Table
-        String[] columnNames = { "ID", "Transaction Amount", "Risk Score", "Risk Level", "Reason", "Status" };
-        tableModel = new DefaultTableModel(columnNames, 0);
+        // Table: rows are fetched page by page as they scroll into view
+        tableModel = new TransactionTableModel();
+        tableModel.setStatusListener(statusLabel::setText);
         table = new JTable(tableModel);
         JScrollPane scrollPane = new JScrollPane(table);
         add(scrollPane, BorderLayout.CENTER);
@@ -80,34 +82,79 @@ public class DashboardUI extends JFrame {
     }
 
     private void loadData() {
-        tableModel.setRowCount(0); // Clear existing
-
-        try (Connection conn = DatabaseManager.connect()) {
-            if (conn == null)
-                return;
-
-            String query = "SELECT r.transaction_id, t.amount, r.risk_score, r.risk_level, r.reason, r.is_reviewed " +
-                    "FROM risk_results r " +
-                    "JOIN transactions t ON r.transaction_id = t.transaction_id " +
-                    "ORDER BY r.risk_score DESC LIMIT 50";
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-
-            while (rs.next()) {
-                int id = rs.getInt("transaction_id");
-                double amt = rs.getDouble("amount");
-                double score = rs.getDouble("risk_score");
-                String level = rs.getString("risk_level");
-                String reason = rs.getString("reason");
-                boolean reviewed = rs.getBoolean("is_reviewed");
-
-                Object[] row = { id, String.format("$%.2f", amt), score, level, reason, reviewed ? "Reviewed" : "New" };
-                tableModel.addRow(row);
+        tableModel.refresh();
+    }
+
+    // Prints the top PRINT_ROWS rows. They are fetched in the background into a separate table, since
+    // printing the live table would render the placeholders of pages that were never scrolled to.
+    private void printReport() {
+        statusLabel.setText("Preparing report...");
+        new SwingWorker<List<Object[]>, Void>() {
+            @Override
+            protected List<Object[]> doInBackground() throws Exception {
+                TransactionQuery q = new TransactionQuery();
+                q.sort = TransactionQuery.Sort.SCORE;
+                q.limit = PRINT_ROWS;
+                List<Object[]> rows = DatabaseManager.queryTransactionRows(q);
+                return rows.size() > PRINT_ROWS ? rows.subList(0, PRINT_ROWS) : rows;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    DefaultTableModel report = new DefaultTableModel(
+                            new String[] { "ID", "Transaction Amount", "Risk Score", "Risk Level", "Reason", "Status" }, 0);
+                    for (Object[] r : get())
+                        report.addRow(new Object[] { r[0], String.format("$%.2f", (Double) r[1]), r[2], r[3], r[4],
+                                (Boolean) r[5] ? "Reviewed" : "New" });
+                    boolean complete = new JTable(report).print(JTable.PrintMode.FIT_WIDTH,
+                            new java.text.MessageFormat("Fraud Detection Report"),
+                            new java.text.MessageFormat("Page - {0}"));
+                    if (complete) {
+                        JOptionPane.showMessageDialog(DashboardUI.this, "Printing Complete", "Result",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(DashboardUI.this, "Printing Cancelled", "Result",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(DashboardUI.this, "Printing Failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // Streams every row to a CSV file page by page; the table and its cache are not involved.
+    private void exportCsv() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("risk_results.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+        File file = chooser.getSelectedFile();
+        new SwingWorker<Long, Long>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                    return TransactionTableModel.writeCsv(out, n -> publish(n));
+                }
+            }
+
+            @Override
+            protected void process(List<Long> chunks) {
+                statusLabel.setText(String.format("Exporting... %,d rows", chunks.get(chunks.size() - 1)));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    long rows = get();
+                    statusLabel.setText(String.format("Exported %,d rows to %s", rows, file.getName()));
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(DashboardUI.this, "Export Failed: " + ex.getMessage());
+                }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error loading data: " + e.getMessage());
-        }
+        }.execute();
     }
 }
@@ -1,15 +1,29 @@
 package src;
 
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DatabaseManager {
     private static final String DEFAULT_DB_URL = "jdbc:sqlite:../database/fraud_platform.db";
 
     private static String getDbUrl() {
+        // -Ddb.path wins over the environment (used by the benchmarks to pick a dataset file)
+        String propPath = System.getProperty("db.path");
+        if (propPath != null && !propPath.isEmpty()) {
+            return "jdbc:sqlite:" + propPath;
+        }
         String envPath = System.getenv("DB_PATH");
         if (envPath != null && !envPath.isEmpty()) {
             return "jdbc:sqlite:" + envPath;
@@ -17,26 +31,376 @@ public class DatabaseManager {
         return DEFAULT_DB_URL;
     }
 
+    // For the load tests and checks in the benchmarks module: unless -Ddb.path or DB_PATH already picks a
+    // database, this JVM uses target/bench-data/<name>.db (seeded on first use and reused afterwards),
+    // so harness runs never write into the tracked database/fraud_platform.db. Call before any query.
+    static void useBenchDatabase(String name) throws IOException {
+        String propPath = System.getProperty("db.path");
+        String envPath = System.getenv("DB_PATH");
+        if ((propPath != null && !propPath.isEmpty()) || (envPath != null && !envPath.isEmpty()))
+            return;
+        if (pool != null)
+            throw new IllegalStateException("Database already opened at " + getDbUrl());
+        java.nio.file.Path dir = java.nio.file.Files.createDirectories(java.nio.file.Paths.get("target", "bench-data"));
+        System.setProperty("db.path", dir.resolve(name + ".db").toString());
+    }
+
+    private static final int POOL_READERS = envInt("DB_POOL_READERS", 8);
+    private static final long POOL_TIMEOUT_MS = envInt("DB_POOL_TIMEOUT_MS", 5000);
+
+    private static volatile ConnectionPool pool;
+    private static volatile RiskScoringEngine scoringEngine;
+    private static volatile HotWindowCache hotCache;
+    // Single-flight guard: one reader warms a cold cache, the others fall back to SQL meanwhile.
+    private static final AtomicBoolean hotCacheWarming = new AtomicBoolean();
+    private static final List<IngestListener> ingestListeners = new CopyOnWriteArrayList<>();
+
+    // Bumped on every committed ingest chunk; backs the API ETags and SSE event ids.
+    private static final AtomicLong dataVersion = new AtomicLong();
+
+    // Always the first listener: the hot cache applies the chunk before the version moves, so a client
+    // can never get the new ETag with the old cache contents, and later listeners see the new version.
+    static {
+        ingestListeners.add(committed -> {
+            HotWindowCache c = hotCache;
+            if (c != null)
+                c.onCommit(committed);
+            dataVersion.incrementAndGet();
+        });
+    }
+
+    // Last risk_generation this process has caught up with (see watchRebuilds).
+    private static final AtomicLong seenGeneration = new AtomicLong();
+    // PRAGMA data_version as last read on watchedWriter; the value is only comparable on one connection.
+    private static Connection watchedWriter;
+    private static long seenDataVersion;
+    private static volatile ScheduledExecutorService rebuildWatcher;
+
+    // Optional ingest buffer: with TXLOG_DIR set, addMockData appends to a memory-mapped log
+    // that a background compactor drains into SQLite (see TransactionLog).
+    private static final String TXLOG_DIR = System.getenv("TXLOG_DIR");
+    private static final int TXLOG_SEGMENT_MB = envInt("TXLOG_SEGMENT_MB", 64);
+    private static final int TXLOG_MAX_SEGMENTS = envInt("TXLOG_MAX_SEGMENTS", 16);
+    private static final int TXLOG_BATCH = envInt("TXLOG_BATCH", 50000);
+    private static final int TXLOG_MAX_DELAY_MS = envInt("TXLOG_MAX_DELAY_MS", 200);
+    private static volatile TransactionLog transactionLog;
+
+    // Optional in-process Isolation Forest (see AnomalyDetector), in place of the Python ML step.
+    private static final boolean ML_SCORING = "true".equalsIgnoreCase(System.getenv("ML_SCORING_ENABLED"));
+    private static final int IFOREST_WINDOW = envInt("IFOREST_WINDOW", 50000);
+    private static final int IFOREST_TREES = envInt("IFOREST_TREES", IsolationForest.DEFAULT_TREES);
+    private static final int IFOREST_RETRAIN_SEC = envInt("IFOREST_RETRAIN_SEC", 300);
+
+    // Optional sliding-window burst rules (see VelocityEngine), applied to every scored ingest.
+    private static final boolean VELOCITY = "true".equalsIgnoreCase(System.getenv("VELOCITY_ENABLED"));
+    private static final int VELOCITY_WINDOW_SEC = envInt("VELOCITY_WINDOW_SEC", 300);
+    private static final int VELOCITY_MAX_TX = envInt("VELOCITY_MAX_TX", 10);
+    private static final int VELOCITY_MAX_AMOUNT = envInt("VELOCITY_MAX_AMOUNT", 10000);
+    private static final int VELOCITY_LOCATION_MAX_TX = envInt("VELOCITY_LOCATION_MAX_TX", 500);
+    private static final int VELOCITY_MAX_KEYS = envInt("VELOCITY_MAX_KEYS", 1_000_000);
+
+    private static final boolean HOT_CACHE_ENABLED = !"false".equalsIgnoreCase(System.getenv("HOT_CACHE_ENABLED"));
+    private static final int HOT_WINDOW_SIZE = 100;
+
+    static {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            System.out.println("SQLite driver not found: " + e.getMessage());
+        }
+    }
+
+    static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value != null && !value.isEmpty()) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring invalid " + name + ": " + value);
+            }
+        }
+        return fallback;
+    }
+
+    static ConnectionPool pool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseManager.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ConnectionPool(getDbUrl(), POOL_READERS, POOL_TIMEOUT_MS);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    // Created on first use and seeded from the existing transaction history.
+    public static RiskScoringEngine scoringEngine() {
+        RiskScoringEngine e = scoringEngine;
+        if (e == null) {
+            synchronized (DatabaseManager.class) {
+                e = scoringEngine;
+                if (e == null) {
+                    e = new RiskScoringEngine(1024);
+                    try {
+                        e.loadProfiles(pool());
+                    } catch (SQLException ex) {
+                        System.out.println("Scoring engine starting with empty profiles: " + ex.getMessage());
+                    }
+                    if (VELOCITY) {
+                        e.setVelocityEngine(new VelocityEngine(VELOCITY_WINDOW_SEC * 1000L, VELOCITY_MAX_TX,
+                                VELOCITY_MAX_AMOUNT, VELOCITY_LOCATION_MAX_TX, VELOCITY_MAX_KEYS));
+                    }
+                    if (ML_SCORING) {
+                        AnomalyDetector detector = new AnomalyDetector(pool(), IFOREST_WINDOW, IFOREST_TREES, 42);
+                        detector.start(IFOREST_RETRAIN_SEC);
+                        e.setAnomalyDetector(detector);
+                    }
+                    scoringEngine = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    public static long dataVersion() {
+        return dataVersion.get();
+    }
+
+    // Polls every periodMs for commits by other processes (RunSimulation, Main, the Python engine, a
+    // Rescorer or RiskRollups rebuild run) and then refreshes the hot cache and with it the ETags.
+    // The writer is this process's only writing connection, so its PRAGMA data_version changes only
+    // when another connection commits.
+    public static synchronized void watchRebuilds(long periodMs) {
+        if (rebuildWatcher != null)
+            return;
+        pollExternalWrites(); // baseline
+        rebuildWatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rebuild-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        rebuildWatcher.scheduleWithFixedDelay(() -> {
+            String change = pollExternalWrites();
+            if (change != null) {
+                System.out.println(change + "; refreshing caches");
+                refreshHotCache();
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Null when nothing was committed elsewhere since the last poll. A new writer connection has no
+    // comparable data_version, so it counts as a change.
+    private static String pollExternalWrites() {
+        Connection conn;
+        long version;
+        long generation;
+        try (ConnectionPool.PooledConnection pc = pool().acquireWrite()) {
+            conn = pc.raw();
+            try (ResultSet rs = pc.prepare("PRAGMA data_version").executeQuery()) {
+                version = rs.next() ? rs.getLong(1) : 0;
+            }
+            generation = RiskRollups.readGeneration(pc);
+        } catch (SQLException e) {
+            System.out.println("Could not poll for external writes: " + e.getMessage());
+            return null;
+        }
+        boolean written = conn != watchedWriter || version != seenDataVersion;
+        boolean first = watchedWriter == null;
+        watchedWriter = conn;
+        seenDataVersion = version;
+        if (seenGeneration.getAndSet(generation) != generation)
+            return first ? null : "risk_results were rebuilt elsewhere";
+        return written && !first ? "Another process wrote to the database" : null;
+    }
+
+    public static void addIngestListener(IngestListener listener) {
+        ingestListeners.add(listener);
+    }
+
+    public static void removeIngestListener(IngestListener listener) {
+        ingestListeners.remove(listener);
+    }
+
+    // Per-method instrumentation (see Metrics.Query)
+    private static final Metrics.Query VENDORS_METRICS = Metrics.query("vendorCategories");
+    private static final Metrics.Query RECENT_METRICS = Metrics.query("queryRecentTransactions");
+    private static final Metrics.Query RECENT_STREAM_METRICS = Metrics.query("streamRecentTransactions");
+    private static final Metrics.Query PAGE_METRICS = Metrics.query("streamTransactionPage");
+    private static final Metrics.Query ROWS_METRICS = Metrics.query("queryTransactionRows");
+    private static final Metrics.Query SEEK_METRICS = Metrics.query("seekScoreOffset");
+    private static final Metrics.Query COUNT_METRICS = Metrics.query("countRiskResults");
+    private static final Metrics.Query STATS_METRICS = Metrics.query("queryRiskStats");
+    private static final Metrics.Query TIMESERIES_METRICS = Metrics.query("streamTimeseries");
+    private static final Metrics.Query REBUILD_METRICS = Metrics.query("rebuildRollups");
+    private static final Metrics.Timer MOCK_DATA_TIMER = Metrics.timer("mock_data_seconds", "addMockData calls");
+
+    private static ConnectionPool.PooledConnection read(Metrics.Query m) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            ConnectionPool.PooledConnection pc = pool().acquireRead();
+            m.connect.recordSince(start);
+            return pc;
+        } catch (SQLException e) {
+            m.errors.increment();
+            throw e;
+        }
+    }
+
+    public static Map<Integer, String> vendorCategories() {
+        Map<Integer, String> vendors = new HashMap<>();
+        try (ConnectionPool.PooledConnection pc = read(VENDORS_METRICS)) {
+            long leased = System.nanoTime();
+            try (ResultSet rs = pc.prepare("SELECT vendor_id, category FROM vendors").executeQuery()) {
+                while (rs.next())
+                    vendors.put(rs.getInt(1), rs.getString(2));
+            }
+            VENDORS_METRICS.query.recordSince(leased);
+            VENDORS_METRICS.rows.add(vendors.size());
+        } catch (SQLException e) {
+            VENDORS_METRICS.errors.increment();
+            System.out.println("Could not load vendor categories: " + e.getMessage());
+        }
+        return vendors;
+    }
+
+    public static HotWindowCache hotCache() {
+        HotWindowCache c = hotCache;
+        if (c == null) {
+            synchronized (DatabaseManager.class) {
+                c = hotCache;
+                if (c == null) {
+                    c = new HotWindowCache(HOT_WINDOW_SIZE);
+                    hotCache = c;
+                }
+            }
+        }
+        if (!c.isWarm() && hotCacheWarming.compareAndSet(false, true)) {
+            try {
+                warmHotCache(c);
+            } finally {
+                hotCacheWarming.set(false);
+            }
+        }
+        return c;
+    }
+
+    public static boolean hotCacheEnabled() {
+        return HOT_CACHE_ENABLED;
+    }
+
+    // Null while no cache exists (disabled, or not used yet); never creates or warms one.
+    public static Map<String, Object> hotCacheMetrics() {
+        HotWindowCache c = hotCache;
+        return c == null ? null : c.getMetrics();
+    }
+
+    // Null until the engine is first used; never creates it, which would load every customer profile.
+    public static Map<String, Object> scoringMetrics() {
+        RiskScoringEngine e = scoringEngine;
+        return e == null ? null : e.getMetrics();
+    }
+
+    // Null while the log is disabled or not opened yet; never opens (and so recovers) it.
+    public static Map<String, Object> transactionLogMetrics() {
+        TransactionLog log = transactionLog;
+        return log == null ? null : log.getMetrics();
+    }
+
+    // Rebuilds the cache from the tables, e.g. after rows were written outside DatabaseManager.
+    public static void refreshHotCache() {
+        HotWindowCache c = hotCache;
+        if (c != null) {
+            c.invalidate();
+            warmHotCache(c);
+        }
+        dataVersion.incrementAndGet();
+        for (IngestListener l : ingestListeners) {
+            try {
+                l.onRefresh();
+            } catch (RuntimeException e) {
+                System.out.println("Ingest listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void warmHotCache(HotWindowCache c) {
+        // Holding the writer lease keeps commits (and their onCommit calls) out while loading.
+        try (ConnectionPool.PooledConnection pc = pool().acquireWrite()) {
+            if (!c.isWarm())
+                c.warm(pc, RECENT_QUERY);
+        } catch (SQLException e) {
+            System.out.println("Hot cache warm-up failed: " + e.getMessage());
+        }
+    }
+
+    // Null unless TXLOG_DIR is set. Opening recovers the log; the compactor then replays anything
+    // that had not reached SQLite before the last shutdown or crash.
+    public static TransactionLog transactionLog() {
+        if (TXLOG_DIR == null || TXLOG_DIR.isEmpty())
+            return null;
+        TransactionLog log = transactionLog;
+        if (log == null) {
+            synchronized (DatabaseManager.class) {
+                log = transactionLog;
+                if (log == null) {
+                    try {
+                        log = new TransactionLog(java.nio.file.Paths.get(TXLOG_DIR), pool(),
+                                newIngestor(INGEST_BATCH_SIZE, TXLOG_BATCH), TXLOG_SEGMENT_MB << 20, TXLOG_MAX_SEGMENTS,
+                                TXLOG_BATCH, TXLOG_MAX_DELAY_MS);
+                    } catch (IOException | SQLException e) {
+                        throw new IllegalStateException("Cannot open transaction log in " + TXLOG_DIR, e);
+                    }
+                    log.start();
+                    TransactionLog opened = log;
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        try {
+                            opened.close();
+                        } catch (IOException e) {
+                            System.out.println("Closing transaction log failed: " + e.getMessage());
+                        }
+                    }, "txlog-shutdown"));
+                    transactionLog = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    public static Map<String, Object> getPoolMetrics() {
+        return pool().getMetrics();
+    }
+
+    // Unpooled connection for ad-hoc callers. Hot paths below go through pool().
     public static Connection connect() {
         Connection conn = null;
         try {
-            Class.forName("org.sqlite.JDBC");
             conn = DriverManager.getConnection(getDbUrl());
-        } catch (ClassNotFoundException | SQLException e) {
+        } catch (SQLException e) {
             System.out.println("Connection Failed: " + e.getMessage());
         }
         return conn;
     }
 
     public static void initializeDatabaseIfEmpty() {
-        try (Connection conn = connect()) {
-            if (conn != null) {
-                DatabaseMetaData dbm = conn.getMetaData();
-                ResultSet tables = dbm.getTables(null, null, "customers", null);
+        boolean seedMock = false;
+        try (ConnectionPool.PooledConnection pc = pool().acquireWrite()) {
+            Connection conn = pc.raw();
+            DatabaseMetaData dbm = conn.getMetaData();
+            boolean hasCustomers;
+            try (ResultSet tables = dbm.getTables(null, null, "customers", null)) {
+                hasCustomers = tables.next();
+            }
+            boolean hasRollups;
+            try (ResultSet tables = dbm.getTables(null, null, "risk_level_totals", null)) {
+                hasRollups = tables.next();
+            }
 
-                if (!tables.next()) {
+            try (Statement stmt = conn.createStatement()) {
+                if (!hasCustomers) {
                     System.out.println("Database empty or missing. Initializing with schema...");
-                    Statement stmt = conn.createStatement();
 
                     // Tables
                     stmt.execute(
@@ -56,20 +420,39 @@ public class DatabaseManager {
                     stmt.execute(
                             "INSERT INTO customers (name, location) VALUES ('John Doe', 'NY'), ('Jane Smith', 'CA'), ('Bob Lee', 'TX')");
 
-                    System.out.println("Seeding 500 mock transactions...");
-                    addMockData(500);
+                    seedMock = true;
                 } else {
-                    Statement stmt = conn.createStatement();
-                    ResultSet rs = stmt.executeQuery("SELECT count(*) FROM customers");
-                    if (rs.next() && rs.getInt(1) == 0) {
-                        System.out.println("Tables exist but are empty. Seeding data...");
-                        seedData(conn);
+                    try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM customers")) {
+                        if (rs.next() && rs.getInt(1) == 0) {
+                            System.out.println("Tables exist but are empty. Seeding data...");
+                            seedData(conn);
+                        }
                     }
                 }
+
+                // Secondary indexes for paging/filtering (no-ops once they exist)
+                for (String ddl : TransactionQuery.indexDdl())
+                    stmt.execute(ddl);
+                if (hasRollups) {
+                    for (String ddl : RiskRollups.ddl())
+                        stmt.execute(ddl);
+                }
+            }
+
+            // First start on a database that predates the rollup tables: build them from history once.
+            if (!hasRollups) {
+                System.out.println("Building risk rollups...");
+                RiskRollups.rebuild(pc);
             }
         } catch (SQLException e) {
             System.out.println("Init Error: " + e.getMessage());
         }
+
+        // Outside the write lease: addMockData acquires the writer itself.
+        if (seedMock) {
+            System.out.println("Seeding 500 mock transactions...");
+            addMockData(500);
+        }
     }
 
     private static void createSchema(Connection conn) throws SQLException {
@@ -82,33 +465,52 @@ public class DatabaseManager {
     }
 
     private static void seedData(Connection conn) throws SQLException {
-        Statement stmt = conn.createStatement();
-        stmt.executeUpdate(
-                "INSERT INTO customers (name, location) VALUES ('Alice Inc', 'New York'), ('Bob Corp', 'London'), ('Charlie LLC', 'Singapore')");
-        stmt.executeUpdate(
-                "INSERT INTO vendors (name, category) VALUES ('TechSoft', 'Software'), ('GlobalLogistics', 'Shipping')");
-        stmt.executeUpdate(
-                "INSERT INTO transactions (customer_id, vendor_id, amount, timestamp, status) VALUES (1, 1, 5000.00, '2023-10-27 10:00:00', 'completed')");
-        stmt.executeUpdate(
-                "INSERT INTO transactions (customer_id, vendor_id, amount, timestamp, location, status) VALUES (1, 2, 15000.00, '2023-10-27 10:05:00', 'New York', 'completed')");
-        stmt.executeUpdate(
-                "INSERT INTO risk_results (transaction_id, risk_score, risk_level, reason) VALUES (2, 85.0, 'CRITICAL', 'Amount > 3x Avg')");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(
+                    "INSERT INTO customers (name, location) VALUES ('Alice Inc', 'New York'), ('Bob Corp', 'London'), ('Charlie LLC', 'Singapore')");
+            stmt.executeUpdate(
+                    "INSERT INTO vendors (name, category) VALUES ('TechSoft', 'Software'), ('GlobalLogistics', 'Shipping')");
+            stmt.executeUpdate(
+                    "INSERT INTO transactions (customer_id, vendor_id, amount, timestamp, status) VALUES (1, 1, 5000.00, '2023-10-27 10:00:00', 'completed')");
+            stmt.executeUpdate(
+                    "INSERT INTO transactions (customer_id, vendor_id, amount, timestamp, location, status) VALUES (1, 2, 15000.00, '2023-10-27 10:05:00', 'New York', 'completed')");
+            stmt.executeUpdate(
+                    "INSERT INTO risk_results (transaction_id, risk_score, risk_level, reason) VALUES (2, 85.0, 'CRITICAL', 'Amount > 3x Avg')");
+        }
         System.out.println("Backup data seeded.");
     }
 
-    public static void addMockData(int count) {
-        try (Connection conn = connect()) {
-            if (conn == null)
-                return;
-            if (conn == null)
-                return;
-            Statement stmt = conn.createStatement();
+    private static final int INGEST_BATCH_SIZE = envInt("INGEST_BATCH_SIZE", 500);
+    private static final int INGEST_COMMIT_INTERVAL = envInt("INGEST_COMMIT_INTERVAL", 5000);
+
+    private static final String[] MOCK_LOCATIONS = { "New York", "London", "Singapore", "Tokyo", "Berlin",
+            "Unknown_Location" };
+
+    public static BulkIngestor newIngestor(int batchSize, int commitInterval) {
+        return new BulkIngestor(pool(), scoringEngine(), batchSize, commitInterval, ingestListeners, true);
+    }
 
-            String[] locations = { "New York", "London", "Singapore", "Tokyo", "Berlin", "Unknown_Location" };
-            String[] timestamps = { "2023-10-25 10:00:00", "2023-10-25 12:30:00", "2023-10-26 09:15:00",
-                    "2023-10-26 14:45:00", "2023-10-27 18:00:00" };
+    public static long bulkInsert(Iterator<TransactionRecord> records) throws SQLException {
+        return newIngestor(INGEST_BATCH_SIZE, INGEST_COMMIT_INTERVAL).ingest(records);
+    }
+
+    // Lazily generated so large counts never sit in memory at once.
+    public static Iterator<TransactionRecord> mockRecords(int count) {
+        return new Iterator<TransactionRecord>() {
+            private int produced = 0;
+            private final java.time.LocalDateTime now = java.time.LocalDateTime.now();
+
+            @Override
+            public boolean hasNext() {
+                return produced < count;
+            }
+
+            @Override
+            public TransactionRecord next() {
+                if (produced >= count)
+                    throw new java.util.NoSuchElementException();
+                produced++;
 
-            for (int i = 0; i < count; i++) {
                 int custId = 1 + (int) (Math.random() * 3);
                 int vendId = 1 + (int) (Math.random() * 6); // 6 vendors
                 double amount = 10 + (Math.random() * 5000);
@@ -117,93 +519,292 @@ public class DatabaseManager {
                     amount *= 3;
 
                 // Generate consistent timestamps for chart trends
-                String ts = java.time.LocalDateTime.now().minusHours((long) (Math.random() * 24 * 7)).toString()
-                        .replace("T", " ");
-                String loc = locations[(int) (Math.random() * locations.length)];
-
-                String insertTx = String.format(
-                        "INSERT INTO transactions (customer_id, vendor_id, amount, timestamp, location, status) " +
-                                "VALUES (%d, %d, %.2f, '%s', '%s', 'completed')",
-                        custId, vendId, amount, ts, loc);
-                stmt.executeUpdate(insertTx);
-
-                ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()");
-                int txId = 0;
-                if (rs.next())
-                    txId = rs.getInt(1);
-
-                if (txId > 0) {
-                    double score = isRisky ? 60 + (Math.random() * 40) : (Math.random() * 30);
-                    String level = score > 80 ? "CRITICAL" : (score > 50 ? "HIGH" : "LOW");
-                    String reason = isRisky ? "High Value / Suspicious Loc" : "Normal Activity";
-
-                    String insertRisk = String.format(
-                            "INSERT INTO risk_results (transaction_id, risk_score, risk_level, reason, fraud_probability, timestamp) "
-                                    + "VALUES (%d, %.2f, '%s', '%s', 0.0, '%s')",
-                            txId, score, level, reason, ts);
-                    stmt.executeUpdate(insertRisk);
-                }
+                String ts = Timestamps.format(now.minusHours((long) (Math.random() * 24 * 7)));
+                String loc = MOCK_LOCATIONS[(int) (Math.random() * MOCK_LOCATIONS.length)];
+
+                // Scored by the ingest path
+                return new TransactionRecord(custId, vendId, Math.round(amount * 100) / 100.0, ts, loc, "completed");
             }
+        };
+    }
+
+    public static void addMockData(int count) {
+        long start = System.nanoTime();
+        try {
+            TransactionLog log = transactionLog();
+            if (log != null)
+                log.appendAll(mockRecords(count));
+            else
+                bulkInsert(mockRecords(count));
             System.out.println("Added " + count + " mock entries with rich data.");
-        } catch (SQLException e) {
+        } catch (SQLException | IOException e) {
             System.out.println("Error adding mock data: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            MOCK_DATA_TIMER.recordSince(start);
         }
     }
 
+    private static final String RECENT_QUERY = "SELECT r.transaction_id, t.amount, r.risk_score, r.risk_level, r.reason, r.is_reviewed, t.timestamp, t.location, v.category, r.timestamp AS r_timestamp "
+            + "FROM risk_results r "
+            + "JOIN transactions t ON r.transaction_id = t.transaction_id "
+            + "LEFT JOIN vendors v ON t.vendor_id = v.vendor_id "
+            + "ORDER BY r.timestamp DESC, r.transaction_id DESC LIMIT " + HOT_WINDOW_SIZE;
+
     public static List<Map<String, Object>> getRecentTransactions() {
+        if (HOT_CACHE_ENABLED) {
+            List<Map<String, Object>> cached = hotCache().getRecent();
+            if (cached != null)
+                return cached;
+        }
+        return queryRecentTransactions();
+    }
+
+    // Uncached SQL path.
+    public static List<Map<String, Object>> queryRecentTransactions() {
         List<Map<String, Object>> list = new ArrayList<>();
-        try (Connection conn = connect()) {
-            if (conn == null)
-                return list;
-
-            String query = "SELECT r.transaction_id, t.amount, r.risk_score, r.risk_level, r.reason, r.is_reviewed, t.timestamp, t.location, v.category "
-                    +
-                    "FROM risk_results r " +
-                    "JOIN transactions t ON r.transaction_id = t.transaction_id " +
-                    "LEFT JOIN vendors v ON t.vendor_id = v.vendor_id " +
-                    "ORDER BY r.timestamp DESC LIMIT 100";
-
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-
-            while (rs.next()) {
-                Map<String, Object> map = new HashMap<>();
-                map.put("id", rs.getInt("transaction_id"));
-                map.put("amount", rs.getDouble("amount"));
-                map.put("score", rs.getDouble("risk_score"));
-                map.put("level", rs.getString("risk_level"));
-                map.put("reason", rs.getString("reason"));
-                map.put("reviewed", rs.getBoolean("is_reviewed"));
-                map.put("timestamp", rs.getString("timestamp"));
-                map.put("location", rs.getString("location"));
-                map.put("category", rs.getString("category")); // Added details
-                list.add(map);
+        try (ConnectionPool.PooledConnection pc = read(RECENT_METRICS)) {
+            long leased = System.nanoTime();
+            try (ResultSet rs = pc.prepare(RECENT_QUERY).executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRecentRow(rs));
+                }
             }
+            RECENT_METRICS.query.recordSince(leased);
+            RECENT_METRICS.rows.add(list.size());
         } catch (Exception e) {
+            RECENT_METRICS.errors.increment();
             e.printStackTrace();
         }
         return list;
     }
 
+    public static void writeRecentTransactions(JsonWriter w) throws IOException {
+        if (HOT_CACHE_ENABLED) {
+            List<Map<String, Object>> cached = hotCache().getRecent();
+            if (cached != null) {
+                JsonStreaming.writeRows(w, cached);
+                return;
+            }
+        }
+        streamRecentTransactions(w);
+    }
+
+    // Writes rows straight from the ResultSet without building per-row maps.
+    public static void streamRecentTransactions(JsonWriter w) throws IOException {
+        try (ConnectionPool.PooledConnection pc = read(RECENT_STREAM_METRICS)) {
+            long leased = System.nanoTime();
+            long n = 0;
+            try (ResultSet rs = pc.prepare(RECENT_QUERY).executeQuery()) {
+                w.beginArray();
+                while (rs.next()) {
+                    w.beginObject();
+                    w.name("id").value(rs.getInt(1));
+                    w.name("amount").value(rs.getDouble(2));
+                    w.name("score").value(rs.getDouble(3));
+                    w.name("level").value(rs.getString(4));
+                    w.name("reason").value(rs.getString(5));
+                    w.name("reviewed").value(rs.getBoolean(6));
+                    w.name("timestamp").value(rs.getString(7));
+                    w.name("location").value(rs.getString(8));
+                    w.name("category").value(rs.getString(9));
+                    w.endObject();
+                    n++;
+                }
+                w.endArray();
+            }
+            RECENT_STREAM_METRICS.query.recordSince(leased);
+            RECENT_STREAM_METRICS.rows.add(n);
+        } catch (SQLException e) {
+            RECENT_STREAM_METRICS.errors.increment();
+            throw new IOException("Streaming recent transactions failed", e);
+        }
+    }
+
+    // Writes {"items": [...], "next": cursor-or-null} for one keyset page.
+    public static void streamTransactionPage(TransactionQuery q, JsonWriter w) throws IOException {
+        try (ConnectionPool.PooledConnection pc = read(PAGE_METRICS)) {
+            long leased = System.nanoTime();
+            PreparedStatement ps = pc.prepare(q.toSql());
+            q.bind(ps);
+            String next = null;
+            try (ResultSet rs = ps.executeQuery()) {
+                w.beginObject();
+                w.name("items").beginArray();
+                int n = 0;
+                String lastKey = null;
+                long lastId = 0;
+                while (rs.next()) {
+                    if (n == q.limit) {
+                        next = q.cursorFor(lastKey, lastId); // an extra row exists
+                        break;
+                    }
+                    w.beginObject();
+                    w.name("id").value(rs.getInt(1));
+                    w.name("amount").value(rs.getDouble(2));
+                    w.name("score").value(rs.getDouble(3));
+                    w.name("level").value(rs.getString(4));
+                    w.name("reason").value(rs.getString(5));
+                    w.name("reviewed").value(rs.getBoolean(6));
+                    w.name("timestamp").value(rs.getString(7));
+                    w.name("location").value(rs.getString(8));
+                    w.name("category").value(rs.getString(9));
+                    w.endObject();
+                    if (q.sort == TransactionQuery.Sort.SCORE) {
+                        double score = rs.getDouble(3);
+                        lastKey = rs.wasNull() ? null : Double.toString(score);
+                    } else {
+                        lastKey = rs.getString(10);
+                    }
+                    lastId = rs.getLong(1);
+                    n++;
+                }
+                w.endArray();
+                PAGE_METRICS.rows.add(n);
+            }
+            w.name("next").value(next);
+            w.endObject();
+            PAGE_METRICS.query.recordSince(leased);
+        } catch (SQLException e) {
+            PAGE_METRICS.errors.increment();
+            throw new IOException("Transaction page query failed", e);
+        }
+    }
+
+    // One keyset page as {id, amount, score, level, reason, reviewed, timestamp, location, category}
+    // arrays; up to q.limit + 1 rows, the extra one only telling the caller another page exists.
+    public static List<Object[]> queryTransactionRows(TransactionQuery q) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(q.limit + 1);
+        try (ConnectionPool.PooledConnection pc = read(ROWS_METRICS)) {
+            long leased = System.nanoTime();
+            PreparedStatement ps = pc.prepare(q.toSql());
+            q.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Object[] { rs.getInt(1), rs.getDouble(2), rs.getDouble(3), rs.getString(4),
+                            rs.getString(5), rs.getBoolean(6), rs.getString(7), rs.getString(8), rs.getString(9) });
+                }
+            }
+            ROWS_METRICS.query.recordSince(leased);
+            ROWS_METRICS.rows.add(rows.size());
+        } catch (SQLException e) {
+            ROWS_METRICS.errors.increment();
+            throw e;
+        }
+        return rows;
+    }
+
+    // Sets the cursor of an unfiltered score-sorted query so its next page starts at row `offset`.
+    // Walks only the covering idx_risk_results_score index, which is much cheaper than an OFFSET on the
+    // joined page query but still O(offset): SQLite steps over every skipped index entry, so deep jumps
+    // cost a scan of that much of the index. Returns false when offset is past the end.
+    public static boolean seekScoreOffset(TransactionQuery q, long offset) throws SQLException {
+        q.afterKey = null;
+        if (offset <= 0)
+            return true;
+        try (ConnectionPool.PooledConnection pc = read(SEEK_METRICS)) {
+            long leased = System.nanoTime();
+            PreparedStatement ps = pc.prepare("SELECT risk_score, transaction_id FROM risk_results "
+                    + "ORDER BY risk_score DESC, transaction_id DESC LIMIT 1 OFFSET ?");
+            ps.setLong(1, offset - 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                SEEK_METRICS.query.recordSince(leased);
+                if (!rs.next())
+                    return false;
+                q.afterKey = Double.toString(rs.getDouble(1));
+                q.afterId = rs.getLong(2);
+                return true;
+            }
+        } catch (SQLException e) {
+            SEEK_METRICS.errors.increment();
+            throw e;
+        }
+    }
+
+    public static long countRiskResults() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = read(COUNT_METRICS)) {
+            long leased = System.nanoTime();
+            try (ResultSet rs = pc.prepare("SELECT COUNT(*) FROM risk_results").executeQuery()) {
+                COUNT_METRICS.query.recordSince(leased);
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            COUNT_METRICS.errors.increment();
+            throw e;
+        }
+    }
+
+    static Map<String, Object> mapRecentRow(ResultSet rs) throws SQLException {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", rs.getInt("transaction_id"));
+        map.put("amount", rs.getDouble("amount"));
+        map.put("score", rs.getDouble("risk_score"));
+        map.put("level", rs.getString("risk_level"));
+        map.put("reason", rs.getString("reason"));
+        map.put("reviewed", rs.getBoolean("is_reviewed"));
+        map.put("timestamp", rs.getString("timestamp"));
+        map.put("location", rs.getString("location"));
+        map.put("category", rs.getString("category")); // Added details
+        return map;
+    }
+
     public static Map<String, Integer> getRiskStats() {
+        if (HOT_CACHE_ENABLED) {
+            Map<String, Integer> cached = hotCache().getStats();
+            if (cached != null)
+                return cached;
+        }
+        return queryRiskStats();
+    }
+
+    // Uncached path: reads the incrementally maintained per-level totals, not risk_results.
+    public static Map<String, Integer> queryRiskStats() {
         Map<String, Integer> stats = new HashMap<>();
         stats.put("CRITICAL", 0);
         stats.put("HIGH", 0);
         stats.put("MEDIUM", 0);
         stats.put("LOW", 0);
 
-        try (Connection conn = connect()) {
-            if (conn == null)
-                return stats;
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt
-                    .executeQuery("SELECT risk_level, COUNT(*) as count FROM risk_results GROUP BY risk_level");
-            while (rs.next()) {
-                stats.put(rs.getString("risk_level"), rs.getInt("count"));
-            }
+        try (ConnectionPool.PooledConnection pc = read(STATS_METRICS)) {
+            long leased = System.nanoTime();
+            Map<String, Long> totals = RiskRollups.readLevelTotals(pc);
+            for (Map.Entry<String, Long> e : totals.entrySet())
+                stats.put(e.getKey(), e.getValue().intValue());
+            STATS_METRICS.query.recordSince(leased);
+            STATS_METRICS.rows.add(totals.size());
         } catch (Exception e) {
+            STATS_METRICS.errors.increment();
             e.printStackTrace();
         }
         return stats;
     }
+
+    public static void streamTimeseries(RiskRollups.Granularity g, String from, String to, String level, int limit,
+            JsonWriter w) throws IOException {
+        try (ConnectionPool.PooledConnection pc = read(TIMESERIES_METRICS)) {
+            long leased = System.nanoTime();
+            TIMESERIES_METRICS.rows.add(RiskRollups.writeTimeseries(pc, g, from, to, level, limit, w));
+            TIMESERIES_METRICS.query.recordSince(leased);
+        } catch (SQLException e) {
+            TIMESERIES_METRICS.errors.increment();
+            throw new IOException("Timeseries query failed", e);
+        }
+    }
+
+    // Recomputes the rollup tables from risk_results, e.g. after the Python job rewrote it.
+    public static void rebuildRollups() throws SQLException {
+        long start = System.nanoTime();
+        try (ConnectionPool.PooledConnection pc = pool().acquireWrite()) {
+            long leased = System.nanoTime();
+            REBUILD_METRICS.connect.record(leased - start);
+            RiskRollups.rebuild(pc);
+            seenGeneration.set(RiskRollups.readGeneration(pc)); // refreshed below, not by the watcher
+            REBUILD_METRICS.query.recordSince(leased);
+        } catch (SQLException e) {
+            REBUILD_METRICS.errors.increment();
+            throw e;
+        }
+        refreshHotCache();
+    }
 }
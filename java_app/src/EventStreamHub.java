@@ -0,0 +1,333 @@
+package src;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-Sent Events fan-out for /api/stream.
+// Each committed ingest chunk becomes two events ("transactions" and "stats" deltas) that are
+// serialized once and shared by every subscriber. Subscribers get a bounded queue drained by a
+// small writer pool; a subscriber whose queue overflows is disconnected and resyncs on reconnect.
+// When the tables change outside the ingest path, a "resync" event tells every client to reload.
+// The HTTP handler returns right after registering, so open streams do not pin request threads.
+// Writes are blocking, so a client that stops reading pins a writer once its socket buffers fill.
+// A watchdog keeps that from starving everyone else: for every write or close stuck longer than
+// STUCK_MS it adds a writer thread, and it interrupts the ones running past the write timeout (or
+// whose subscriber was dropped meanwhile), which closes that client's channel and frees the thread.
+public class EventStreamHub implements IngestListener, HttpHandler {
+    private static final int MAX_ROWS_PER_EVENT = 100;
+    private static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final long STUCK_MS = 100; // also the watchdog period
+
+    private final int maxSubscribers;
+    private final int queueCapacity;
+    private final Map<Integer, String> vendorCategories;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final int writerThreads;
+    private final long writeTimeoutNanos;
+    private final ThreadPoolExecutor writers;
+    private final ScheduledExecutorService heartbeat;
+    private final Set<BlockingIo> blocking = ConcurrentHashMap.newKeySet();
+
+    // Metrics
+    private final LongAdder connected = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder droppedSlow = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+    private final LongAdder eventsPublished = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private class Subscriber {
+        final HttpExchange exchange;
+        final OutputStream out;
+        final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+    }
+
+    public EventStreamHub(int maxSubscribers, int queueCapacity, int writerThreads, long heartbeatSeconds,
+            long writeTimeoutMs, Map<Integer, String> vendorCategories) {
+        this.maxSubscribers = maxSubscribers;
+        this.queueCapacity = queueCapacity;
+        this.writerThreads = writerThreads;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+        this.vendorCategories = vendorCategories;
+
+        // Grows past writerThreads only while writes are stuck (see watchStuckWrites); the queue is
+        // unbounded, so the maximum never comes into play.
+        AtomicInteger n = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(writerThreads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "sse-writer-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleAtFixedRate(() -> broadcast(HEARTBEAT), heartbeatSeconds, heartbeatSeconds,
+                TimeUnit.SECONDS);
+        heartbeat.scheduleWithFixedDelay(this::watchStuckWrites, STUCK_MS, STUCK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void handle(HttpExchange t) throws IOException {
+        t.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+        if (!"GET".equals(t.getRequestMethod())) {
+            t.sendResponseHeaders(405, -1);
+            t.close();
+            return;
+        }
+        if (subscribers.size() >= maxSubscribers) {
+            rejected.increment();
+            t.getResponseHeaders().add("Retry-After", "5");
+            t.sendResponseHeaders(503, -1);
+            t.close();
+            return;
+        }
+
+        t.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        t.getResponseHeaders().set("Cache-Control", "no-cache");
+        t.getResponseHeaders().set("X-Accel-Buffering", "no"); // stop nginx from buffering the stream
+        t.sendResponseHeaders(200, 0);
+
+        Subscriber s = new Subscriber(t);
+        subscribers.add(s);
+        connected.increment();
+        // Tells EventSource how long to wait before reconnecting, and flushes the headers.
+        enqueue(s, "retry: 3000\n\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onCommit(List<TransactionRecord> committed) {
+        if (subscribers.isEmpty())
+            return;
+
+        List<TransactionRecord> scored = new ArrayList<>();
+        Map<String, Integer> delta = new TreeMap<>();
+        for (TransactionRecord r : committed) {
+            if (!r.hasRisk())
+                continue;
+            scored.add(r);
+            delta.merge(r.riskLevel, 1, Integer::sum);
+        }
+        if (scored.isEmpty())
+            return;
+
+        // Only the newest rows matter to a dashboard showing the latest window.
+        if (scored.size() > MAX_ROWS_PER_EVENT) {
+            scored.sort(Comparator.comparing((TransactionRecord r) -> r.timestamp == null ? "" : r.timestamp)
+                    .thenComparingLong(r -> r.transactionId).reversed());
+            scored = scored.subList(0, MAX_ROWS_PER_EVENT);
+        }
+
+        try {
+            StringWriter rows = new StringWriter();
+            try (JsonWriter w = new JsonWriter(rows)) {
+                w.beginArray();
+                for (TransactionRecord r : scored) {
+                    w.beginObject();
+                    for (Map.Entry<String, Object> e : r.toRow(vendorCategories.get(r.vendorId)).entrySet()) {
+                        w.name(e.getKey());
+                        JsonStreaming.writeValue(w, e.getValue());
+                    }
+                    w.endObject();
+                }
+                w.endArray();
+            }
+            StringWriter stats = new StringWriter();
+            try (JsonWriter w = new JsonWriter(stats)) {
+                w.beginObject();
+                for (Map.Entry<String, Integer> e : delta.entrySet())
+                    w.name(e.getKey()).value(e.getValue());
+                w.endObject();
+            }
+            long id = DatabaseManager.dataVersion();
+            broadcast(event("transactions", id, rows.toString()));
+            broadcast(event("stats", id, stats.toString()));
+        } catch (IOException e) {
+            System.out.println("SSE event encoding failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onRefresh() {
+        if (!subscribers.isEmpty())
+            broadcast(event("resync", DatabaseManager.dataVersion(), "{}"));
+    }
+
+    private static byte[] event(String name, long id, String data) {
+        return ("event: " + name + "\nid: " + id + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void broadcast(byte[] event) {
+        if (event != HEARTBEAT)
+            eventsPublished.increment();
+        for (Subscriber s : subscribers)
+            enqueue(s, event);
+    }
+
+    private void enqueue(Subscriber s, byte[] event) {
+        if (!s.queue.offer(event)) {
+            droppedSlow.increment();
+            close(s);
+            return;
+        }
+        if (s.scheduled.compareAndSet(false, true))
+            writers.execute(() -> drain(s));
+    }
+
+    private void drain(Subscriber s) {
+        try {
+            byte[] event;
+            while ((event = s.queue.poll()) != null) {
+                byte[] e = event;
+                guarded(s, () -> s.out.write(e));
+                bytesWritten.add(event.length);
+            }
+            guarded(s, s.out::flush);
+        } catch (IOException e) {
+            disconnected.increment();
+            close(s);
+            return;
+        } finally {
+            s.scheduled.set(false);
+        }
+        // Catch events that arrived after the last poll but before the flag was cleared.
+        if (!s.queue.isEmpty() && s.scheduled.compareAndSet(false, true))
+            writers.execute(() -> drain(s));
+    }
+
+    private void close(Subscriber s) {
+        if (!s.closed.compareAndSet(false, true))
+            return;
+        subscribers.remove(s);
+        s.queue.clear();
+        for (BlockingIo op : blocking) {
+            if (op.subscriber == s)
+                interrupt(op); // no point finishing a stuck write to a client being dropped
+        }
+        // Closing writes the final chunk and can block on a stalled socket, so never do it inline.
+        try {
+            writers.execute(() -> {
+                try {
+                    guarded(s, s.exchange::close);
+                } catch (IOException ignored) {
+                    // close() reports nothing
+                }
+            });
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            s.exchange.close();
+        }
+    }
+
+    private interface Io {
+        void run() throws IOException;
+    }
+
+    // One write or close in progress; `active` (guarded by this) is cleared when it ends, so the
+    // watchdog never interrupts a thread that has moved on.
+    private final class BlockingIo {
+        final Subscriber subscriber;
+        final Thread thread = Thread.currentThread();
+        final long started = System.nanoTime();
+        boolean active = true;
+
+        BlockingIo(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+    }
+
+    // Runs a blocking write or close where watchStuckWrites can see it. The JDK server writes through
+    // an interruptible channel, so an interrupt aborts the write and closes that client's channel.
+    private void guarded(Subscriber s, Io io) throws IOException {
+        BlockingIo op = new BlockingIo(s);
+        blocking.add(op);
+        try {
+            io.run();
+        } finally {
+            blocking.remove(op);
+            synchronized (op) {
+                op.active = false;
+            }
+            Thread.interrupted(); // an interrupt that landed as the write completed must not hit the next one
+        }
+    }
+
+    private void watchStuckWrites() {
+        long now = System.nanoTime();
+        int stuck = 0;
+        for (BlockingIo op : blocking) {
+            long age = now - op.started;
+            if (age > writeTimeoutNanos)
+                interrupt(op);
+            else if (age > TimeUnit.MILLISECONDS.toNanos(STUCK_MS))
+                stuck++;
+        }
+        // Growing starts threads for queued drains right away; extra threads exit once idle.
+        if (writers.getCorePoolSize() != writerThreads + stuck)
+            writers.setCorePoolSize(writerThreads + stuck);
+    }
+
+    private void interrupt(BlockingIo op) {
+        synchronized (op) {
+            if (op.active) {
+                op.active = false;
+                stalled.increment();
+                op.thread.interrupt();
+            }
+        }
+    }
+
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        for (Subscriber s : subscribers)
+            close(s);
+        writers.shutdown();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("subscribers", subscribers.size());
+        m.put("maxSubscribers", maxSubscribers);
+        m.put("connected", connected.sum());
+        m.put("rejected", rejected.sum());
+        m.put("droppedSlow", droppedSlow.sum());
+        m.put("disconnected", disconnected.sum());
+        m.put("stalled", stalled.sum());
+        m.put("writerThreads", writers.getPoolSize());
+        m.put("eventsPublished", eventsPublished.sum());
+        m.put("bytesWritten", bytesWritten.sum());
+        return m;
+    }
+}
@@ -0,0 +1,185 @@
+package src;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Write-through cache behind /api/transactions and /api/stats.
+// Holds the newest N scored transactions (same order as the SQL: timestamp DESC, id DESC)
+// and per-level counters. Reads return a prebuilt immutable snapshot, so a poll is O(1).
+public class HotWindowCache implements IngestListener {
+    private final int capacity;
+
+    // Window entries, newest first. Guarded by this.
+    private final List<Entry> window = new ArrayList<>();
+    private Map<Integer, String> vendorCategories = new HashMap<>();
+
+    private volatile List<Map<String, Object>> snapshot;
+    private final ConcurrentHashMap<String, AtomicLong> levelCounts = new ConcurrentHashMap<>();
+    private volatile boolean warm;
+
+    // Metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder appliedRows = new LongAdder();
+    private volatile long lastSyncMillis;
+    private volatile long lastApplyMillis;
+
+    private static class Entry {
+        final String timestamp;
+        final long id;
+        final Map<String, Object> row;
+
+        Entry(String timestamp, long id, Map<String, Object> row) {
+            this.timestamp = timestamp == null ? "" : timestamp;
+            this.id = id;
+            this.row = row;
+        }
+
+        // Negative when this entry sorts before (is newer than) the other.
+        int compareNewest(Entry o) {
+            int c = o.timestamp.compareTo(timestamp);
+            return c != 0 ? c : Long.compare(o.id, id);
+        }
+    }
+
+    public HotWindowCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    // Loads window and counters from the database. Must run on the writer connection
+    // so no commit can land between the load and the next onCommit.
+    public synchronized void warm(ConnectionPool.PooledConnection writer, String recentQuery) throws SQLException {
+        Map<Integer, String> vendors = new HashMap<>();
+        try (ResultSet rs = writer.prepare("SELECT vendor_id, category FROM vendors").executeQuery()) {
+            while (rs.next())
+                vendors.put(rs.getInt(1), rs.getString(2));
+        }
+
+        List<Entry> loaded = new ArrayList<>();
+        try (ResultSet rs = writer.prepare(recentQuery).executeQuery()) {
+            while (rs.next()) {
+                Map<String, Object> map = DatabaseManager.mapRecentRow(rs);
+                loaded.add(new Entry(rs.getString("r_timestamp"), rs.getLong("transaction_id"),
+                        Collections.unmodifiableMap(map)));
+            }
+        }
+
+        Map<String, Long> counts = RiskRollups.readLevelTotals(writer);
+
+        vendorCategories = vendors;
+        window.clear();
+        window.addAll(loaded);
+        levelCounts.clear();
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            if (e.getKey() != null)
+                levelCounts.put(e.getKey(), new AtomicLong(e.getValue()));
+        }
+        publish();
+        lastSyncMillis = System.currentTimeMillis();
+        warm = true;
+    }
+
+    public void invalidate() {
+        warm = false;
+    }
+
+    @Override
+    public synchronized void onCommit(List<TransactionRecord> committed) {
+        if (!warm)
+            return; // the next warm() picks these rows up from the table
+        boolean changed = false;
+        for (TransactionRecord r : committed) {
+            if (!r.hasRisk())
+                continue;
+            levelCounts.computeIfAbsent(r.riskLevel, k -> new AtomicLong()).incrementAndGet();
+            changed |= offer(r);
+        }
+        if (changed)
+            publish();
+        appliedRows.add(committed.size());
+        lastApplyMillis = System.currentTimeMillis();
+    }
+
+    private boolean offer(TransactionRecord r) {
+        Entry e = new Entry(r.timestamp, r.transactionId, null);
+        if (window.size() >= capacity && e.compareNewest(window.get(window.size() - 1)) >= 0)
+            return false; // older than everything in a full window
+
+        Map<String, Object> map = r.toRow(vendorCategories.get(r.vendorId));
+        e = new Entry(r.timestamp, r.transactionId, Collections.unmodifiableMap(map));
+
+        // Streaming data arrives newest-first in practice, so this is usually index 0.
+        int lo = 0, hi = window.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (window.get(mid).compareNewest(e) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        window.add(lo, e);
+        if (window.size() > capacity)
+            window.remove(window.size() - 1);
+        return true;
+    }
+
+    private void publish() {
+        List<Map<String, Object>> rows = new ArrayList<>(window.size());
+        for (Entry e : window)
+            rows.add(e.row);
+        snapshot = Collections.unmodifiableList(rows);
+    }
+
+    // Null when the cache is cold; callers fall back to SQL.
+    public List<Map<String, Object>> getRecent() {
+        List<Map<String, Object>> s = snapshot;
+        if (!warm || s == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return s;
+    }
+
+    public Map<String, Integer> getStats() {
+        if (!warm) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        Map<String, Integer> stats = new HashMap<>();
+        stats.put("CRITICAL", 0);
+        stats.put("HIGH", 0);
+        stats.put("MEDIUM", 0);
+        stats.put("LOW", 0);
+        for (Map.Entry<String, AtomicLong> e : levelCounts.entrySet())
+            stats.put(e.getKey(), (int) e.getValue().get());
+        return stats;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        m.put("warm", warm);
+        m.put("capacity", capacity);
+        m.put("hits", hits.sum());
+        m.put("misses", misses.sum());
+        m.put("appliedRows", appliedRows.sum());
+        m.put("msSinceFullSync", lastSyncMillis == 0 ? -1 : now - lastSyncMillis);
+        m.put("msSinceLastWrite", lastApplyMillis == 0 ? -1 : now - lastApplyMillis);
+        return m;
+    }
+}
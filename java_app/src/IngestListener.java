@@ -0,0 +1,14 @@
+package src;
+
+import java.util.List;
+
+// Notified by BulkIngestor after each chunk commits, while the writer lease is still held,
+// so listeners observe commits in order and never see rolled-back rows.
+public interface IngestListener {
+    void onCommit(List<TransactionRecord> committed);
+
+    // Called by DatabaseManager.refreshHotCache when the tables changed outside the ingest path
+    // (rollup rebuild, rescore swap, another process); state built from earlier commits is stale.
+    default void onRefresh() {
+    }
+}
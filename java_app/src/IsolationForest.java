@@ -0,0 +1,279 @@
+package src;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Isolation Forest with the semantics of sklearn.ensemble.IsolationForest (the model that
+// train_and_predict_ml fits): trees grown on max_samples rows drawn without replacement, to depth
+// ceil(log2(max_samples)), each split on a random non-constant feature at a uniform threshold in
+// [min, max) with x <= threshold going left; a leaf contributes depth + c(leaf size).
+// score_samples = -2^(-mean path / c(max_samples)); decision_function = score_samples - offset,
+// with offset the contamination percentile of the training scores, so decision < 0 is an anomaly.
+//
+// All trees live in three flat arrays laid out in preorder, so the left child of node i is i + 1:
+//   feature[i]    split feature, or -1 for a leaf
+//   threshold[i]  split threshold, or the leaf's path length (depth + c(size))
+//   right[i]      index of the right child
+// Scoring an event is ~depth array reads per tree with no allocation. Instances are immutable.
+public class IsolationForest {
+    public static final int DEFAULT_TREES = 100;
+    public static final int DEFAULT_MAX_SAMPLES = 256;
+    public static final double DEFAULT_CONTAMINATION = 0.05;
+    private static final double EULER_GAMMA = 0.5772156649015329;
+    private static final double FEATURE_THRESHOLD = 1e-7; // sklearn's tolerance for a constant feature
+
+    private final int[] roots;
+    private final int[] feature;
+    private final double[] threshold;
+    private final int[] right;
+    private final int maxSamples;
+    private final double offset;
+
+    private IsolationForest(int[] roots, int[] feature, double[] threshold, int[] right, int maxSamples, double offset) {
+        this.roots = roots;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.right = right;
+        this.maxSamples = maxSamples;
+        this.offset = offset;
+    }
+
+    // The inputs of train_and_predict_ml: amount and hour of day. Values are rounded to float
+    // because sklearn fits and scores trees on float32 input.
+    public static double[] features(TransactionRecord r) {
+        return features(r.amount, Timestamps.epochMillis(r.timestamp));
+    }
+
+    public static double[] features(double amount, long epochMillis) {
+        long hour = epochMillis == Timestamps.NONE ? 0 : Math.floorMod(epochMillis / 3_600_000L, 24L);
+        return new double[] { (float) amount, hour };
+    }
+
+    // Average path length of an unsuccessful BST search among n points (sklearn's _average_path_length).
+    static double averagePathLength(long n) {
+        if (n <= 1)
+            return 0.0;
+        if (n == 2)
+            return 1.0;
+        return 2.0 * (Math.log(n - 1.0) + EULER_GAMMA) - 2.0 * (n - 1.0) / n;
+    }
+
+    public double scoreSamples(double[] x) {
+        double depth = 0;
+        int[] f = feature;
+        double[] t = threshold;
+        int[] r = right;
+        for (int root : roots) {
+            int i = root;
+            int fi;
+            // Arithmetic select instead of a branch: the split direction is data-dependent and
+            // would mispredict often.
+            while ((fi = f[i]) >= 0) {
+                int goRight = x[fi] <= t[i] ? 0 : 1;
+                i += 1 + goRight * (r[i] - i - 1);
+            }
+            depth += t[i];
+        }
+        return -Math.pow(2.0, -(depth / roots.length) / averagePathLength(maxSamples));
+    }
+
+    // Negative for anomalies.
+    public double decisionFunction(double[] x) {
+        return scoreSamples(x) - offset;
+    }
+
+    public int trees() {
+        return roots.length;
+    }
+
+    public int nodes() {
+        return feature.length;
+    }
+
+    public double offset() {
+        return offset;
+    }
+
+    // rows[i] is one sample; every row has the same number of features.
+    public static IsolationForest train(double[][] rows, int trees, int maxSamples, double contamination, long seed) {
+        if (rows.length == 0)
+            throw new IllegalArgumentException("Cannot train on an empty sample");
+        int psi = Math.min(maxSamples, rows.length);
+        int maxDepth = (int) Math.ceil(Math.log(Math.max(psi, 2)) / Math.log(2));
+        Builder b = new Builder(trees * (2 * psi - 1), rows[0].length);
+        SplittableRandom rnd = new SplittableRandom(seed);
+        int[] all = new int[rows.length];
+        for (int i = 0; i < all.length; i++)
+            all[i] = i;
+        int[] roots = new int[trees];
+        for (int t = 0; t < trees; t++) {
+            // Partial Fisher-Yates: the first psi entries become a sample without replacement.
+            for (int i = 0; i < psi; i++) {
+                int j = i + rnd.nextInt(all.length - i);
+                int tmp = all[i];
+                all[i] = all[j];
+                all[j] = tmp;
+            }
+            int[] sample = Arrays.copyOf(all, psi);
+            roots[t] = b.size;
+            b.grow(rows, sample, 0, psi, 0, maxDepth, rnd);
+        }
+        IsolationForest unscored = b.build(roots, psi, 0.0);
+        double[] scores = new double[rows.length];
+        for (int i = 0; i < rows.length; i++)
+            scores[i] = unscored.scoreSamples(rows[i]);
+        return b.build(roots, psi, percentile(scores, 100.0 * contamination));
+    }
+
+    // numpy.percentile with the default linear interpolation.
+    static double percentile(double[] values, double q) {
+        double[] v = values.clone();
+        Arrays.sort(v);
+        double pos = (v.length - 1) * q / 100.0;
+        int lo = (int) Math.floor(pos);
+        int hi = Math.min(lo + 1, v.length - 1);
+        return v[lo] + (v[hi] - v[lo]) * (pos - lo);
+    }
+
+    private static final class Builder {
+        int[] feature;
+        double[] threshold;
+        int[] right;
+        int size;
+        final int features;
+
+        Builder(int capacity, int features) {
+            feature = new int[capacity];
+            threshold = new double[capacity];
+            right = new int[capacity];
+            this.features = features;
+        }
+
+        int add(int f, double t) {
+            if (size == feature.length) {
+                int cap = Math.max(16, size * 2);
+                feature = Arrays.copyOf(feature, cap);
+                threshold = Arrays.copyOf(threshold, cap);
+                right = Arrays.copyOf(right, cap);
+            }
+            feature[size] = f;
+            threshold[size] = t;
+            right[size] = -1;
+            return size++;
+        }
+
+        // Grows the subtree over sample[from, to) in preorder.
+        void grow(double[][] rows, int[] sample, int from, int to, int depth, int maxDepth, SplittableRandom rnd) {
+            int n = to - from;
+            if (depth >= maxDepth || n < 2) {
+                add(-1, depth + averagePathLength(n));
+                return;
+            }
+            // Random feature among those not constant here, as sklearn's random splitter does.
+            int[] candidates = new int[features];
+            for (int f = 0; f < features; f++)
+                candidates[f] = f;
+            int remaining = features;
+            int f = -1;
+            double min = 0, max = 0;
+            while (remaining > 0) {
+                int k = rnd.nextInt(remaining);
+                int cand = candidates[k];
+                candidates[k] = candidates[--remaining];
+                min = Double.POSITIVE_INFINITY;
+                max = Double.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    double v = rows[sample[i]][cand];
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                if (max > min + FEATURE_THRESHOLD) {
+                    f = cand;
+                    break;
+                }
+            }
+            if (f < 0) {
+                add(-1, depth + averagePathLength(n));
+                return;
+            }
+            double t = min + rnd.nextDouble() * (max - min);
+            if (t >= max)
+                t = min;
+
+            // Partition in place: x <= t to the front.
+            int mid = from;
+            for (int i = from; i < to; i++) {
+                if (rows[sample[i]][f] <= t) {
+                    int tmp = sample[i];
+                    sample[i] = sample[mid];
+                    sample[mid++] = tmp;
+                }
+            }
+            int node = add(f, t);
+            grow(rows, sample, from, mid, depth + 1, maxDepth, rnd);
+            right[node] = size;
+            grow(rows, sample, mid, to, depth + 1, maxDepth, rnd);
+        }
+
+        IsolationForest build(int[] roots, int maxSamples, double offset) {
+            return new IsolationForest(roots, Arrays.copyOf(feature, size), Arrays.copyOf(threshold, size),
+                    Arrays.copyOf(right, size), maxSamples, offset);
+        }
+    }
+
+    // Loads a fitted sklearn model as written by python_engine/export_iforest.py:
+    // {"max_samples": n, "offset": o, "trees": [{"children_left", "children_right", "feature",
+    //  "threshold", "n_node_samples"}, ...]}. Trees are re-laid out in preorder.
+    public static IsolationForest fromSklearn(Reader json) throws IOException {
+        JsonObject o = JsonParser.parseReader(json).getAsJsonObject();
+        JsonArray trees = o.getAsJsonArray("trees");
+        int maxSamples = o.get("max_samples").getAsInt();
+        Builder b = new Builder(1024, 0);
+        int[] roots = new int[trees.size()];
+        for (int t = 0; t < trees.size(); t++) {
+            JsonObject tree = trees.get(t).getAsJsonObject();
+            int[] left = ints(tree.getAsJsonArray("children_left"));
+            int[] rightChild = ints(tree.getAsJsonArray("children_right"));
+            int[] feat = ints(tree.getAsJsonArray("feature"));
+            double[] thr = doubles(tree.getAsJsonArray("threshold"));
+            int[] samples = ints(tree.getAsJsonArray("n_node_samples"));
+            roots[t] = b.size;
+            copy(b, 0, 0, left, rightChild, feat, thr, samples);
+        }
+        return b.build(roots, maxSamples, o.get("offset").getAsDouble());
+    }
+
+    private static void copy(Builder b, int node, int depth, int[] left, int[] rightChild, int[] feat, double[] thr,
+            int[] samples) {
+        if (left[node] < 0) {
+            b.add(-1, depth + averagePathLength(samples[node]));
+            return;
+        }
+        int at = b.add(feat[node], thr[node]);
+        copy(b, left[node], depth + 1, left, rightChild, feat, thr, samples);
+        b.right[at] = b.size;
+        copy(b, rightChild[node], depth + 1, left, rightChild, feat, thr, samples);
+    }
+
+    private static int[] ints(JsonArray a) {
+        int[] v = new int[a.size()];
+        int i = 0;
+        for (JsonElement e : a)
+            v[i++] = e.getAsInt();
+        return v;
+    }
+
+    private static double[] doubles(JsonArray a) {
+        double[] v = new double[a.size()];
+        int i = 0;
+        for (JsonElement e : a)
+            v[i++] = e.getAsDouble();
+        return v;
+    }
+}
@@ -0,0 +1,109 @@
+package src;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// Streams JSON straight to the response body (chunked), with optional gzip and ETag revalidation.
+public class JsonStreaming {
+    // Changes on every restart so clients never revalidate against a previous process's versions.
+    private static final String BOOT_ID = Long.toString(System.currentTimeMillis(), 36);
+
+    public interface Body {
+        void write(JsonWriter w) throws IOException;
+    }
+
+    public static String etag(long version, boolean gzip) {
+        return "\"" + BOOT_ID + "-" + version + (gzip ? "-gz" : "") + "\"";
+    }
+
+    public static boolean acceptsGzip(HttpExchange t) {
+        List<String> values = t.getRequestHeaders().get("Accept-Encoding");
+        if (values == null)
+            return false;
+        for (String v : values) {
+            if (v.toLowerCase().contains("gzip"))
+                return true;
+        }
+        return false;
+    }
+
+    // Sends 304 with no body when the client already holds this version; otherwise streams body.
+    public static void send(HttpExchange t, long version, Body body) throws IOException {
+        boolean gzip = acceptsGzip(t);
+        String etag = etag(version, gzip);
+        t.getResponseHeaders().set("ETag", etag);
+        t.getResponseHeaders().set("Cache-Control", "no-cache");
+        t.getResponseHeaders().set("Vary", "Accept-Encoding");
+
+        String ifNoneMatch = t.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            t.sendResponseHeaders(304, -1);
+            t.close();
+            return;
+        }
+
+        t.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (gzip)
+            t.getResponseHeaders().set("Content-Encoding", "gzip");
+        t.sendResponseHeaders(200, 0); // chunked
+
+        OutputStream os = t.getResponseBody();
+        if (gzip)
+            os = new GZIPOutputStream(os, 8192);
+        try (JsonWriter w = new JsonWriter(
+                new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 8192))) {
+            body.write(w);
+        }
+    }
+
+    // Small non-cacheable response (errors); buffered so Content-Length is known.
+    public static void sendStatus(HttpExchange t, int status, Body body) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (JsonWriter w = new JsonWriter(sw)) {
+            body.write(w);
+        }
+        byte[] bytes = sw.toString().getBytes(StandardCharsets.UTF_8);
+        t.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        t.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    public static void writeRows(JsonWriter w, List<Map<String, Object>> rows) throws IOException {
+        w.beginArray();
+        for (Map<String, Object> row : rows) {
+            w.beginObject();
+            for (Map.Entry<String, Object> e : row.entrySet()) {
+                w.name(e.getKey());
+                writeValue(w, e.getValue());
+            }
+            w.endObject();
+        }
+        w.endArray();
+    }
+
+    public static void writeValue(JsonWriter w, Object v) throws IOException {
+        if (v == null)
+            w.nullValue();
+        else if (v instanceof String)
+            w.value((String) v);
+        else if (v instanceof Boolean)
+            w.value((Boolean) v);
+        else if (v instanceof Integer || v instanceof Long)
+            w.value(((Number) v).longValue());
+        else if (v instanceof Number)
+            w.value(((Number) v).doubleValue());
+        else
+            w.value(v.toString());
+    }
+}
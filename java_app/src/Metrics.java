@@ -0,0 +1,292 @@
+package src;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Process-wide instrumentation behind /api/metrics. Hot paths hold their Timer/Counter in a static
+// field, so recording is a volatile read plus lock-free adds: no lookup, lock or allocation.
+// Existing getMetrics() maps (pool, cache, executor, ...) are registered as components and exported
+// as gauges. Disable with METRICS_ENABLED=false.
+public class Metrics {
+    private static volatile boolean enabled = !"false".equalsIgnoreCase(System.getenv("METRICS_ENABLED"));
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final Map<String, Family> families = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<Map<String, Object>>> components = new ConcurrentHashMap<>();
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final boolean timer;
+        final Map<String, Object> children = new ConcurrentHashMap<>(); // label text -> Timer or Counter
+
+        Family(String name, String help, boolean timer) {
+            this.name = name;
+            this.help = help;
+            this.timer = timer;
+        }
+    }
+
+    public static final class Timer {
+        final String[] labels;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        Timer(String[] labels) {
+            this.labels = labels;
+        }
+
+        public void record(long nanos) {
+            if (enabled)
+                histogram.record(nanos);
+        }
+
+        // Records the time since startNanos (a System.nanoTime() value).
+        public void recordSince(long startNanos) {
+            if (enabled)
+                histogram.record(System.nanoTime() - startNanos);
+        }
+
+        public LatencyHistogram.Snapshot snapshot() {
+            return histogram.snapshot();
+        }
+    }
+
+    public static final class Counter {
+        final String[] labels;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String[] labels) {
+            this.labels = labels;
+        }
+
+        public void increment() {
+            if (enabled)
+                value.increment();
+        }
+
+        public void add(long n) {
+            if (enabled)
+                value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    // The usual set for one DatabaseManager method.
+    public static final class Query {
+        public final Timer connect;
+        public final Timer query;
+        public final Counter rows;
+        public final Counter errors;
+
+        Query(String method) {
+            connect = timer("db_connect_seconds", "Time to lease a pooled connection", "method", method);
+            query = timer("db_query_seconds", "Time from lease to result consumed (including response writing)",
+                    "method", method);
+            rows = counter("db_rows_read_total", "Rows read from result sets", "method", method);
+            errors = counter("db_errors_total", "SQL failures", "method", method);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    // labels are name/value pairs. Same name and labels return the same Timer.
+    public static Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, help, true).children.computeIfAbsent(labelText(labels), k -> new Timer(labels));
+    }
+
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, false).children.computeIfAbsent(labelText(labels), k -> new Counter(labels));
+    }
+
+    public static Query query(String method) {
+        return new Query(method);
+    }
+
+    public static void registerComponent(String name, Supplier<Map<String, Object>> metrics) {
+        components.put(name, metrics);
+    }
+
+    private static Family family(String name, String help, boolean timer) {
+        Family f = families.computeIfAbsent(name, n -> new Family(n, help, timer));
+        if (f.timer != timer)
+            throw new IllegalArgumentException(name + " is already registered as a " + (f.timer ? "timer" : "counter"));
+        return f;
+    }
+
+    private static String labelText(String[] labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("labels must be name/value pairs");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String v) {
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Prometheus text exposition format 0.0.4. Timers are summaries in seconds plus a _max gauge.
+    public static void writePrometheus(StringBuilder out) {
+        for (Family f : new TreeMap<>(families).values()) {
+            Map<String, Object> children = new TreeMap<>(f.children);
+            out.append("# HELP ").append(f.name).append(' ').append(f.help).append('\n');
+            out.append("# TYPE ").append(f.name).append(f.timer ? " summary\n" : " counter\n");
+            List<String> maxLines = new ArrayList<>();
+            for (Map.Entry<String, Object> e : children.entrySet()) {
+                String labels = e.getKey();
+                if (!f.timer) {
+                    out.append(f.name).append(braces(labels)).append(' ').append(((Counter) e.getValue()).get()).append('\n');
+                    continue;
+                }
+                LatencyHistogram.Snapshot s = ((Timer) e.getValue()).snapshot();
+                for (double q : QUANTILES) {
+                    String ql = (labels.isEmpty() ? "" : labels + ",") + "quantile=\"" + q + "\"";
+                    out.append(f.name).append('{').append(ql).append("} ").append(s.quantile(q) / 1e9).append('\n');
+                }
+                out.append(f.name).append("_sum").append(braces(labels)).append(' ').append(s.sumNanos / 1e9).append('\n');
+                out.append(f.name).append("_count").append(braces(labels)).append(' ').append(s.count).append('\n');
+                maxLines.add(f.name + "_max" + braces(labels) + " " + s.maxNanos / 1e9);
+            }
+            if (!maxLines.isEmpty()) {
+                out.append("# TYPE ").append(f.name).append("_max gauge\n");
+                for (String line : maxLines)
+                    out.append(line).append('\n');
+            }
+        }
+
+        out.append("# HELP component_stat Numeric values from component getMetrics() maps\n");
+        out.append("# TYPE component_stat gauge\n");
+        for (Map.Entry<String, Map<String, Object>> c : componentSnapshots().entrySet()) {
+            Map<String, Double> flat = new TreeMap<>();
+            flatten("", c.getValue(), flat);
+            for (Map.Entry<String, Double> e : flat.entrySet()) {
+                out.append("component_stat{component=\"").append(escape(c.getKey())).append("\",stat=\"")
+                        .append(escape(e.getKey())).append("\"} ").append(e.getValue()).append('\n');
+            }
+        }
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatten(String prefix, Map<String, Object> m, Map<String, Double> out) {
+        for (Map.Entry<String, Object> e : m.entrySet()) {
+            String key = prefix + e.getKey();
+            Object v = e.getValue();
+            if (v instanceof Number) {
+                double d = ((Number) v).doubleValue();
+                if (!Double.isNaN(d) && !Double.isInfinite(d))
+                    out.put(key, d);
+            }
+            else if (v instanceof Boolean)
+                out.put(key, (Boolean) v ? 1.0 : 0.0);
+            else if (v instanceof Map)
+                flatten(key + ".", (Map<String, Object>) v, out);
+        }
+    }
+
+    private static Map<String, Map<String, Object>> componentSnapshots() {
+        Map<String, Map<String, Object>> snap = new TreeMap<>();
+        for (Map.Entry<String, Supplier<Map<String, Object>>> c : components.entrySet()) {
+            try {
+                Map<String, Object> m = c.getValue().get();
+                if (m != null)
+                    snap.put(c.getKey(), m);
+            } catch (RuntimeException e) {
+                System.out.println("Metrics component " + c.getKey() + " failed: " + e.getMessage());
+            }
+        }
+        return snap;
+    }
+
+    // {"timers": {name: [{"labels": {...}, "count", "meanMs", "p50Ms", "p90Ms", "p99Ms", "p999Ms", "maxMs"}]},
+    //  "counters": {name: [{"labels": {...}, "value"}]}, "components": {name: {...}}}
+    public static void writeJson(JsonWriter w) throws IOException {
+        Map<String, Family> sorted = new TreeMap<>(families);
+        w.beginObject();
+        for (boolean timers : new boolean[] { true, false }) {
+            w.name(timers ? "timers" : "counters").beginObject();
+            for (Family f : sorted.values()) {
+                if (f.timer != timers)
+                    continue;
+                w.name(f.name).beginArray();
+                for (Object child : new TreeMap<>(f.children).values()) {
+                    w.beginObject();
+                    String[] labels = timers ? ((Timer) child).labels : ((Counter) child).labels;
+                    w.name("labels").beginObject();
+                    for (int i = 0; i < labels.length; i += 2)
+                        w.name(labels[i]).value(labels[i + 1]);
+                    w.endObject();
+                    if (timers) {
+                        LatencyHistogram.Snapshot s = ((Timer) child).snapshot();
+                        w.name("count").value(s.count);
+                        w.name("meanMs").value(s.meanNanos() / 1e6);
+                        w.name("p50Ms").value(s.quantile(0.5) / 1e6);
+                        w.name("p90Ms").value(s.quantile(0.9) / 1e6);
+                        w.name("p99Ms").value(s.quantile(0.99) / 1e6);
+                        w.name("p999Ms").value(s.quantile(0.999) / 1e6);
+                        w.name("maxMs").value(s.maxNanos / 1e6);
+                    } else {
+                        w.name("value").value(((Counter) child).get());
+                    }
+                    w.endObject();
+                }
+                w.endArray();
+            }
+            w.endObject();
+        }
+        w.name("components").beginObject();
+        for (Map.Entry<String, Map<String, Object>> c : componentSnapshots().entrySet()) {
+            w.name(c.getKey());
+            writeValue(w, c.getValue());
+        }
+        w.endObject();
+        w.endObject();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(JsonWriter w, Object v) throws IOException {
+        if (v == null) {
+            w.nullValue();
+        } else if (v instanceof Number) {
+            double d = ((Number) v).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d))
+                w.nullValue();
+            else
+                w.value((Number) v);
+        } else if (v instanceof Boolean) {
+            w.value((Boolean) v);
+        } else if (v instanceof Map) {
+            w.beginObject();
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) v).entrySet()) {
+                w.name(String.valueOf(e.getKey()));
+                writeValue(w, e.getValue());
+            }
+            w.endObject();
+        } else {
+            w.value(String.valueOf(v));
+        }
+    }
+}
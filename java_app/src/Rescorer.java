@@ -0,0 +1,511 @@
+package src;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Re-runs the rule set over the whole history, e.g. after a threshold change.
+//   1. Snapshot the high-water transaction_id and the per-customer row counts.
+//   2. Split the customer_id range on a ForkJoinPool until each task covers ~leafRows transactions. A
+//      task reads its customers on its own read connection, computes each customer's mean over its
+//      full history (as calculate_profiles does) and applies RiskScoringEngine.applyRules. Velocity
+//      findings (bursts) depend on arrival order and cannot be recomputed, so the ones already in
+//      risk_results are carried over onto the new scores. So are Isolation Forest findings, with their
+//      fraud_probability: the live model was trained on recent rows, and a standalone run has none.
+//   3. The calling thread writes results into a shadow table in chunked commits, releasing the writer
+//      lease between chunks so live ingest keeps going.
+//   4. One swap transaction carries over rows ingested since the snapshot and review flags, replaces
+//      risk_results with the shadow, rebuilds its indexes and the rollups, and commits. WAL readers see
+//      the old table until the commit and the new one after, never an empty one.
+// Usage: java -cp "lib/*:bin" src.Rescorer [parallelism] [leafRows]
+public class Rescorer {
+    public static final String SHADOW_TABLE = "risk_results_rescore";
+    private static final String INSERT_SHADOW = "INSERT INTO " + SHADOW_TABLE
+            + " (transaction_id, risk_score, risk_level, reason, fraud_probability, timestamp) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String PARTITION_QUERY = "SELECT transaction_id, customer_id, amount, timestamp, location "
+            + "FROM transactions WHERE customer_id BETWEEN ? AND ? AND transaction_id <= ? ORDER BY customer_id, transaction_id";
+    private static final String NULL_CUSTOMER_QUERY = "SELECT transaction_id, customer_id, amount, timestamp, location "
+            + "FROM transactions WHERE customer_id IS NULL AND transaction_id <= ?";
+    private static final String FINDINGS_QUERY = "SELECT transaction_id, reason, fraud_probability FROM risk_results "
+            + "WHERE transaction_id <= ? AND (reason LIKE '%" + VelocityEngine.VELOCITY_REASON + "%' OR reason LIKE '%"
+            + VelocityEngine.LOCATION_REASON + "%' OR reason LIKE '%" + AnomalyDetector.ML_REASON + "%')";
+    private static final int QUEUE_CHUNKS = 64;
+    private static final int CHUNK_ROWS = 2000;
+
+    private final ConnectionPool pool;
+    private final int parallelism;
+    private final int leafRows;
+    private final int commitRows;
+    private final boolean write;
+
+    // Progress
+    private final LongAdder scoredRows = new LongAdder();
+    private final LongAdder writtenRows = new LongAdder();
+    private final long[] levelCounts = new long[4];
+    private volatile long totalRows;
+    private volatile long startNanos;
+    private volatile String phase = "idle";
+
+    // With write == false results are scored and dropped, which measures the parallel part on its own.
+    public Rescorer(ConnectionPool pool, int parallelism, int leafRows, int commitRows, boolean write) {
+        if (parallelism <= 0 || leafRows <= 0 || commitRows <= 0)
+            throw new IllegalArgumentException("parallelism, leafRows and commitRows must be positive");
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.leafRows = leafRows;
+        this.commitRows = commitRows;
+        this.write = write;
+    }
+
+    // Customers in ascending id order with their row counts; prefix[i] = rows of customers [0, i).
+    private static final class Plan {
+        final long highWater;
+        final int[] customers;
+        final long[] prefix;
+        final long nullCustomerRows;
+        // By transaction_id, read-only once planned
+        final Map<Long, String> velocityFindings;
+        final Map<Long, Double> mlFindings; // fraud_probability
+
+        Plan(long highWater, int[] customers, long[] prefix, long nullCustomerRows, Map<Long, String> velocityFindings,
+                Map<Long, Double> mlFindings) {
+            this.highWater = highWater;
+            this.customers = customers;
+            this.prefix = prefix;
+            this.nullCustomerRows = nullCustomerRows;
+            this.velocityFindings = velocityFindings;
+            this.mlFindings = mlFindings;
+        }
+
+        long rows(int lo, int hi) {
+            return prefix[hi] - prefix[lo];
+        }
+
+        long total() {
+            return prefix[customers.length] + nullCustomerRows;
+        }
+    }
+
+    private Plan plan() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = pool.acquireRead()) {
+            long highWater;
+            try (ResultSet rs = pc.prepare("SELECT COALESCE(MAX(transaction_id), 0) FROM transactions").executeQuery()) {
+                highWater = rs.next() ? rs.getLong(1) : 0;
+            }
+            List<long[]> groups = new ArrayList<>();
+            long nullRows = 0;
+            PreparedStatement ps = pc.prepare("SELECT customer_id, COUNT(*) FROM transactions WHERE transaction_id <= ? "
+                    + "GROUP BY customer_id ORDER BY customer_id");
+            ps.setLong(1, highWater);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long customer = rs.getLong(1);
+                    if (rs.wasNull())
+                        nullRows = rs.getLong(2);
+                    else
+                        groups.add(new long[] { customer, rs.getLong(2) });
+                }
+            }
+            int[] customers = new int[groups.size()];
+            long[] prefix = new long[groups.size() + 1];
+            for (int i = 0; i < customers.length; i++) {
+                customers[i] = (int) groups.get(i)[0];
+                prefix[i + 1] = prefix[i] + groups.get(i)[1];
+            }
+            Map<Long, String> findings = new HashMap<>();
+            Map<Long, Double> mlFindings = new HashMap<>();
+            ps = pc.prepare(FINDINGS_QUERY);
+            ps.setLong(1, highWater);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String reason = rs.getString(2);
+                    if (reason.contains(AnomalyDetector.ML_REASON))
+                        mlFindings.put(rs.getLong(1), rs.getDouble(3));
+                    String found = VelocityEngine.findings(AnomalyDetector.withoutFinding(reason));
+                    if (found != null)
+                        findings.put(rs.getLong(1), found);
+                }
+            }
+            return new Plan(highWater, customers, prefix, nullRows, findings, mlFindings);
+        }
+    }
+
+    public Map<String, Object> run() throws SQLException, InterruptedException {
+        startNanos = System.nanoTime();
+        phase = "planning";
+        Plan plan = plan();
+        totalRows = plan.total();
+        long planNanos = System.nanoTime() - startNanos;
+        if (write)
+            createShadow();
+
+        phase = "scoring";
+        BlockingQueue<List<TransactionRecord>> results = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+        AtomicBoolean aborted = new AtomicBoolean();
+        ForkJoinPool fj = new ForkJoinPool(parallelism);
+        ForkJoinTask<Void> root = fj.submit(new Partition(plan, 0, plan.customers.length, true, results, aborted));
+        try {
+            drain(root, results);
+            try {
+                root.join();
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof SQLException)
+                    throw (SQLException) e.getCause();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException | InterruptedException e) {
+            aborted.set(true);
+            phase = "failed";
+            if (write)
+                dropShadow();
+            throw e;
+        } finally {
+            fj.shutdownNow();
+        }
+        long scoreNanos = System.nanoTime() - startNanos - planNanos;
+
+        long swapNanos = 0;
+        if (write) {
+            phase = "swapping";
+            long swapStart = System.nanoTime();
+            swap(plan.highWater);
+            swapNanos = System.nanoTime() - swapStart;
+        }
+        phase = "done";
+
+        Map<String, Object> m = getProgress();
+        m.put("highWaterId", plan.highWater);
+        m.put("customers", plan.customers.length);
+        m.put("planMs", planNanos / 1e6);
+        m.put("scoreAndWriteMs", scoreNanos / 1e6);
+        m.put("swapMs", swapNanos / 1e6);
+        return m;
+    }
+
+    // Splits by row count rather than by id, so a skewed customer distribution still balances.
+    private class Partition extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Plan plan;
+        private final int lo;
+        private final int hi;
+        private final boolean includeNullCustomer;
+        private final BlockingQueue<List<TransactionRecord>> out;
+        private final AtomicBoolean aborted;
+
+        Partition(Plan plan, int lo, int hi, boolean includeNullCustomer, BlockingQueue<List<TransactionRecord>> out,
+                AtomicBoolean aborted) {
+            this.plan = plan;
+            this.lo = lo;
+            this.hi = hi;
+            this.includeNullCustomer = includeNullCustomer;
+            this.out = out;
+            this.aborted = aborted;
+        }
+
+        @Override
+        protected void compute() {
+            if (includeNullCustomer && plan.nullCustomerRows > 0) {
+                invokeAll(new Partition(plan, lo, hi, false, out, aborted), new NullCustomers(plan, out, aborted));
+                return;
+            }
+            if (hi - lo > 1 && plan.rows(lo, hi) > leafRows) {
+                // First index whose prefix passes the midpoint in rows
+                long target = plan.prefix[lo] + plan.rows(lo, hi) / 2;
+                int a = lo + 1, b = hi - 1;
+                while (a < b) {
+                    int mid = (a + b) >>> 1;
+                    if (plan.prefix[mid] < target)
+                        a = mid + 1;
+                    else
+                        b = mid;
+                }
+                invokeAll(new Partition(plan, lo, a, false, out, aborted), new Partition(plan, a, hi, false, out, aborted));
+                return;
+            }
+            if (lo == hi)
+                return;
+            try (ConnectionPool.PooledConnection pc = pool.acquireRead()) {
+                PreparedStatement ps = pc.prepare(PARTITION_QUERY);
+                ps.setInt(1, plan.customers[lo]);
+                ps.setInt(2, plan.customers[hi - 1]);
+                ps.setLong(3, plan.highWater);
+                scoreCustomers(ps, plan, out, aborted);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // Rows without a customer have no baseline, so only the amount and location rules can fire.
+    private class NullCustomers extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Plan plan;
+        private final BlockingQueue<List<TransactionRecord>> out;
+        private final AtomicBoolean aborted;
+
+        NullCustomers(Plan plan, BlockingQueue<List<TransactionRecord>> out, AtomicBoolean aborted) {
+            this.plan = plan;
+            this.out = out;
+            this.aborted = aborted;
+        }
+
+        @Override
+        protected void compute() {
+            try (ConnectionPool.PooledConnection pc = pool.acquireRead()) {
+                PreparedStatement ps = pc.prepare(NULL_CUSTOMER_QUERY);
+                ps.setLong(1, plan.highWater);
+                scoreCustomers(ps, plan, out, aborted);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // Reads rows ordered by customer, and scores each customer's rows against the mean of all of them.
+    private void scoreCustomers(PreparedStatement ps, Plan plan, BlockingQueue<List<TransactionRecord>> out,
+            AtomicBoolean aborted) throws SQLException {
+        List<TransactionRecord> customerRows = new ArrayList<>();
+        List<TransactionRecord> chunk = new ArrayList<>(CHUNK_ROWS);
+        Integer current = null;
+        double sum = 0;
+        long n = 0;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int customer = rs.getInt(2);
+                Integer key = rs.wasNull() ? null : customer;
+                if (!customerRows.isEmpty() && (key == null || !key.equals(current))) {
+                    chunk = scoreGroup(customerRows, current == null ? 0 : sum / n, plan, chunk, out, aborted);
+                    customerRows.clear();
+                    sum = 0;
+                    n = 0;
+                }
+                current = key;
+                double amount = rs.getDouble(3);
+                if (rs.wasNull()) {
+                    amount = Double.NaN; // fails every amount rule, as NaN does in pandas
+                } else {
+                    sum += amount;
+                    n++;
+                }
+                TransactionRecord r = new TransactionRecord(customer, 0, amount, rs.getString(4), rs.getString(5), null);
+                r.transactionId = rs.getLong(1);
+                customerRows.add(r);
+            }
+        }
+        if (!customerRows.isEmpty())
+            chunk = scoreGroup(customerRows, current == null || n == 0 ? 0 : sum / n, plan, chunk, out, aborted);
+        if (!chunk.isEmpty())
+            publish(chunk, out, aborted);
+    }
+
+    private List<TransactionRecord> scoreGroup(List<TransactionRecord> rows, double avg, Plan plan,
+            List<TransactionRecord> chunk, BlockingQueue<List<TransactionRecord>> out, AtomicBoolean aborted) {
+        for (TransactionRecord r : rows) {
+            RiskScoringEngine.applyRules(r, avg);
+            VelocityEngine.carryOver(r, plan.velocityFindings.get(r.transactionId));
+            AnomalyDetector.carryOver(r, plan.mlFindings.get(r.transactionId));
+            chunk.add(r);
+            if (chunk.size() == CHUNK_ROWS) {
+                publish(chunk, out, aborted);
+                chunk = new ArrayList<>(CHUNK_ROWS);
+            }
+        }
+        scoredRows.add(rows.size());
+        return chunk;
+    }
+
+    private void publish(List<TransactionRecord> chunk, BlockingQueue<List<TransactionRecord>> out, AtomicBoolean aborted) {
+        try {
+            while (!out.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (aborted.get())
+                    throw new IllegalStateException("Rescore aborted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rescore interrupted", e);
+        }
+    }
+
+    // Writes chunks into the shadow table until every partition has finished and the queue is empty.
+    private void drain(ForkJoinTask<Void> root, BlockingQueue<List<TransactionRecord>> results)
+            throws SQLException, InterruptedException {
+        List<TransactionRecord> pending = new ArrayList<>(commitRows);
+        while (true) {
+            List<TransactionRecord> chunk = results.poll(50, TimeUnit.MILLISECONDS);
+            if (chunk != null) {
+                pending.addAll(chunk);
+                if (pending.size() >= commitRows) {
+                    writeShadow(pending);
+                    pending.clear();
+                }
+            } else if (root.isDone() && results.isEmpty()) {
+                break;
+            }
+        }
+        writeShadow(pending);
+    }
+
+    private void writeShadow(List<TransactionRecord> rows) throws SQLException {
+        for (TransactionRecord r : rows)
+            levelCounts[levelIndex(r.riskLevel)]++;
+        if (!write || rows.isEmpty()) {
+            writtenRows.add(rows.size());
+            return;
+        }
+        try (ConnectionPool.PooledConnection pc = pool.acquireWrite()) {
+            Connection conn = pc.raw();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = pc.prepare(INSERT_SHADOW);
+                for (TransactionRecord r : rows) {
+                    ps.setLong(1, r.transactionId);
+                    ps.setDouble(2, r.riskScore);
+                    ps.setString(3, r.riskLevel);
+                    ps.setString(4, r.reason);
+                    ps.setDouble(5, r.fraudProbability);
+                    ps.setString(6, r.timestamp);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        writtenRows.add(rows.size());
+    }
+
+    private static int levelIndex(String level) {
+        switch (level) {
+            case "CRITICAL":
+                return 0;
+            case "HIGH":
+                return 1;
+            case "MEDIUM":
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    // Same definition as the live table (AUTOINCREMENT or not), under the shadow name.
+    private void createShadow() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = pool.acquireWrite(); Statement stmt = pc.raw().createStatement()) {
+            String ddl;
+            try (ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = 'risk_results'")) {
+                if (!rs.next())
+                    throw new SQLException("risk_results does not exist");
+                ddl = rs.getString(1);
+            }
+            String shadowDdl = ddl.replaceFirst("(?i)^CREATE TABLE\\s+(\"?)risk_results\\1", "CREATE TABLE " + SHADOW_TABLE);
+            if (shadowDdl.equals(ddl))
+                throw new SQLException("Unexpected risk_results definition: " + ddl);
+            stmt.execute("DROP TABLE IF EXISTS " + SHADOW_TABLE);
+            stmt.execute(shadowDdl);
+        }
+    }
+
+    private void dropShadow() {
+        try (ConnectionPool.PooledConnection pc = pool.acquireWrite(); Statement stmt = pc.raw().createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + SHADOW_TABLE);
+        } catch (SQLException e) {
+            System.out.println("Could not drop " + SHADOW_TABLE + ": " + e.getMessage());
+        }
+    }
+
+    private void swap(long highWater) throws SQLException {
+        try (ConnectionPool.PooledConnection pc = pool.acquireWrite()) {
+            Connection conn = pc.raw();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Verdicts the live path wrote for transactions newer than the snapshot
+                stmt.executeUpdate("INSERT INTO " + SHADOW_TABLE
+                        + " (transaction_id, risk_score, risk_level, reason, fraud_probability, is_reviewed, timestamp) "
+                        + "SELECT transaction_id, risk_score, risk_level, reason, fraud_probability, is_reviewed, timestamp "
+                        + "FROM risk_results WHERE transaction_id > " + highWater);
+                // Analyst review state survives a re-score
+                stmt.executeUpdate("UPDATE " + SHADOW_TABLE + " SET is_reviewed = 1 WHERE transaction_id IN "
+                        + "(SELECT transaction_id FROM risk_results WHERE is_reviewed = 1 AND transaction_id <= " + highWater + ")");
+                stmt.execute("DROP TABLE risk_results");
+                stmt.execute("ALTER TABLE " + SHADOW_TABLE + " RENAME TO risk_results");
+                for (String ddl : TransactionQuery.indexDdl())
+                    stmt.execute(ddl);
+                RiskRollups.recompute(stmt);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    public Map<String, Object> getProgress() {
+        long total = totalRows;
+        long scored = scoredRows.sum();
+        long written = writtenRows.sum();
+        double seconds = startNanos == 0 ? 0 : (System.nanoTime() - startNanos) / 1e9;
+        double rate = seconds == 0 ? 0 : written / seconds;
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("phase", phase);
+        m.put("parallelism", parallelism);
+        m.put("totalRows", total);
+        m.put("scoredRows", scored);
+        m.put("writtenRows", written);
+        m.put("percent", total == 0 ? 0.0 : Math.round(1000.0 * written / total) / 10.0);
+        m.put("rowsPerSec", Math.round(rate));
+        m.put("etaSec", rate == 0 ? null : Math.round((total - written) / rate));
+        if ("done".equals(phase)) {
+            m.put("critical", levelCounts[0]);
+            m.put("high", levelCounts[1]);
+            m.put("medium", levelCounts[2]);
+            m.put("low", levelCounts[3]);
+        }
+        return m;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int parallelism = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int leafRows = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        DatabaseManager.initializeDatabaseIfEmpty();
+        Rescorer rescorer = new Rescorer(DatabaseManager.pool(), parallelism, leafRows, 20_000, true);
+        Thread reporter = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(2000);
+                    System.out.println("  " + rescorer.getProgress());
+                }
+            } catch (InterruptedException e) {
+                // finished
+            }
+        }, "rescore-progress");
+        reporter.setDaemon(true);
+        reporter.start();
+
+        Map<String, Object> result = rescorer.run();
+        reporter.interrupt();
+        DatabaseManager.refreshHotCache();
+        System.out.println("Rescore complete: " + result);
+        System.exit(0);
+    }
+}
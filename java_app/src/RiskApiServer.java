@@ -1,35 +1,173 @@
 package src;
 
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import com.google.gson.Gson;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RiskApiServer {
     private static final int PORT = 8080;
-    private static final Gson gson = new Gson();
+    // Rules are scored inline on ingest; the Python batch job is opt-in.
+    private static final boolean PYTHON_ANALYSIS = "true".equalsIgnoreCase(System.getenv("PYTHON_ANALYSIS_ENABLED"));
+
+    private static final BackgroundTasks backgroundTasks = new BackgroundTasks("api-background", 1, 16);
+    private static volatile ServerExecutors.AdmissionExecutor executor;
+    private static volatile EventStreamHub eventHub;
+
+    private static final Metrics.Timer PYTHON_TIMER = Metrics.timer("python_analysis_seconds",
+            "POST to the Python /analyze service, including the rollup rebuild");
+    private static final Metrics.Counter PYTHON_ERRORS = Metrics.counter("python_analysis_errors_total",
+            "Python analysis calls that failed or returned non-200");
 
     public static void main(String[] args) throws IOException {
+        // Bound how long a client may take to send a request (seconds). The JDK response limit would
+        // also cut /api/stream responses, so handlers get SERVER_HANDLER_TIMEOUT_MS from the
+        // admission filter instead (see ServerExecutors).
+        System.setProperty("sun.net.httpserver.maxReqTime",
+                System.getProperty("sun.net.httpserver.maxReqTime", "30"));
+
         // Ensure DB is initialized
         DatabaseManager.initializeDatabaseIfEmpty();
+        if (DatabaseManager.hotCacheEnabled())
+            DatabaseManager.hotCache();
+        // Picks up writes from other processes (simulations, the Python engine, rebuild runs); 0 disables.
+        int rebuildPollMs = DatabaseManager.envInt("REBUILD_POLL_MS", 2000);
+        if (rebuildPollMs > 0)
+            DatabaseManager.watchRebuilds(rebuildPollMs);
 
-        HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        ServerExecutors.Mode mode = ServerExecutors.parseMode(System.getenv("SERVER_EXECUTOR"));
+        start(PORT, mode, DatabaseManager.envInt("SERVER_THREADS", 16), DatabaseManager.envInt("SERVER_BACKLOG", 256),
+                DatabaseManager.envInt("SERVER_QUEUE_TIMEOUT_MS", 2000),
+                DatabaseManager.envInt("SERVER_HANDLER_TIMEOUT_MS", 30000));
+    }
+
+    public static HttpServer start(int port, ServerExecutors.Mode mode, int threads, int backlog, long queueTimeoutMs,
+            long handlerTimeoutMs) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), backlog);
+        executor = ServerExecutors.create(mode, threads, backlog, queueTimeoutMs, handlerTimeoutMs);
+        eventHub = new EventStreamHub(DatabaseManager.envInt("SSE_MAX_SUBSCRIBERS", 2000),
+                DatabaseManager.envInt("SSE_QUEUE_CAPACITY", 64), DatabaseManager.envInt("SSE_WRITER_THREADS", 4),
+                DatabaseManager.envInt("SSE_HEARTBEAT_SECONDS", 15), DatabaseManager.envInt("SSE_WRITE_TIMEOUT_MS", 10000),
+                DatabaseManager.vendorCategories());
+        DatabaseManager.addIngestListener(eventHub);
 
         // Contexts
-        server.createContext("/api/transactions", new TransactionsHandler());
-        server.createContext("/api/stats", new StatsHandler());
-        server.createContext("/api/simulate", new SimulationHandler());
+        HttpContext[] contexts = {
+                server.createContext("/api/transactions", new TransactionsHandler()),
+                server.createContext("/api/stats", new StatsHandler()),
+                server.createContext("/api/stats/timeseries", new TimeseriesHandler()),
+                server.createContext("/api/simulate", new SimulationHandler()),
+                server.createContext("/api/metrics", new MetricsHandler()),
+                server.createContext("/api/stream", eventHub)
+        };
 
-        // Default executor
-        server.setExecutor(null);
+        for (HttpContext ctx : contexts) {
+            // First, so requests shed by the admission filter are counted too. Stream responses are
+            // open-ended, so only their status codes are counted, and they have no handler deadline.
+            ctx.getFilters().add(new MetricsFilter(ctx.getPath(), ctx.getHandler() != eventHub));
+            if (executor != null)
+                ctx.getFilters().add(executor.filter(ctx.getHandler() != eventHub));
+        }
+        registerMetricComponents();
+        server.setExecutor(executor);
 
-        System.out.println("Starting Server on Port " + PORT);
+        System.out.println("Starting Server on Port " + port + " (executor: " + mode.name().toLowerCase() + ", threads: "
+                + threads + ", backlog: " + backlog + ")");
         server.start();
+        return server;
+    }
+
+    private static void registerMetricComponents() {
+        Metrics.registerComponent("pool", DatabaseManager::getPoolMetrics);
+        Metrics.registerComponent("executor", RiskApiServer::getExecutorMetrics);
+        Metrics.registerComponent("stream", RiskApiServer::getStreamMetrics);
+        Metrics.registerComponent("background", backgroundTasks::getMetrics);
+        Metrics.registerComponent("scoring", DatabaseManager::scoringMetrics);
+        Metrics.registerComponent("hotCache", DatabaseManager::hotCacheMetrics);
+        Metrics.registerComponent("transactionLog", DatabaseManager::transactionLogMetrics);
+    }
+
+    // Latency per endpoint and response counts per endpoint and status.
+    static class MetricsFilter extends Filter {
+        private final String endpoint;
+        private final Metrics.Timer timer;
+        private final Map<Integer, Metrics.Counter> responses = new ConcurrentHashMap<>();
+
+        MetricsFilter(String endpoint, boolean timed) {
+            this.endpoint = endpoint;
+            this.timer = timed ? Metrics.timer("http_request_seconds", "Request handling time by endpoint",
+                    "endpoint", endpoint) : null;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long start = System.nanoTime();
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                if (timer != null)
+                    timer.recordSince(start);
+                int code = exchange.getResponseCode(); // -1 if the handler failed before responding
+                responses.computeIfAbsent(code, c -> Metrics.counter("http_responses_total",
+                        "Responses by endpoint and status code", "endpoint", endpoint, "code", Integer.toString(c)))
+                        .increment();
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Request metrics";
+        }
+    }
+
+    // Prometheus text by default; ?format=json for JSON.
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            addCORSHeaders(t);
+            if (!"GET".equals(t.getRequestMethod())) {
+                t.sendResponseHeaders(405, -1);
+                return;
+            }
+            Map<String, String> params = TransactionQuery.parseParams(t.getRequestURI().getRawQuery());
+            t.getResponseHeaders().set("Cache-Control", "no-cache");
+            if ("json".equalsIgnoreCase(params.get("format"))) {
+                JsonStreaming.sendStatus(t, 200, Metrics::writeJson);
+                return;
+            }
+            StringBuilder sb = new StringBuilder(16384);
+            Metrics.writePrometheus(sb);
+            byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+            t.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            t.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = t.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+
+    public static void stop(HttpServer server) {
+        DatabaseManager.removeIngestListener(eventHub);
+        eventHub.shutdown();
+        server.stop(0);
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    public static Map<String, Object> getStreamMetrics() {
+        return eventHub.getMetrics();
+    }
+
+    public static Map<String, Object> getExecutorMetrics() {
+        ServerExecutors.AdmissionExecutor ex = executor;
+        return ex == null ? java.util.Collections.singletonMap("mode", "single") : ex.getMetrics();
     }
 
     static class TransactionsHandler implements HttpHandler {
@@ -37,9 +175,21 @@ public class RiskApiServer {
         public void handle(HttpExchange t) throws IOException {
             addCORSHeaders(t);
             if ("GET".equals(t.getRequestMethod())) {
-                List<Map<String, Object>> transactions = DatabaseManager.getRecentTransactions();
-                String response = gson.toJson(transactions);
-                sendResponse(t, response);
+                String query = t.getRequestURI().getRawQuery();
+                if (query == null || query.isEmpty()) {
+                    // Plain poll: latest window as a bare array
+                    JsonStreaming.send(t, DatabaseManager.dataVersion(), DatabaseManager::writeRecentTransactions);
+                    return;
+                }
+                // ?level=&reviewed=&location=&category=&from=&to=&sort=time|score&limit=&after=
+                TransactionQuery q;
+                try {
+                    q = TransactionQuery.fromQueryString(query);
+                } catch (IllegalArgumentException e) {
+                    sendError(t, 400, e.getMessage());
+                    return;
+                }
+                JsonStreaming.send(t, DatabaseManager.dataVersion(), w -> DatabaseManager.streamTransactionPage(q, w));
             } else {
                 t.sendResponseHeaders(405, -1); // Method Not Allowed
             }
@@ -51,15 +201,74 @@ public class RiskApiServer {
         public void handle(HttpExchange t) throws IOException {
             addCORSHeaders(t);
             if ("GET".equals(t.getRequestMethod())) {
-                Map<String, Integer> stats = DatabaseManager.getRiskStats();
-                String response = gson.toJson(stats);
-                sendResponse(t, response);
+                JsonStreaming.send(t, DatabaseManager.dataVersion(), w -> {
+                    Map<String, Integer> stats = DatabaseManager.getRiskStats();
+                    w.beginObject();
+                    for (Map.Entry<String, Integer> e : stats.entrySet()) {
+                        if (e.getKey() != null)
+                            w.name(e.getKey()).value(e.getValue());
+                    }
+                    w.endObject();
+                });
             } else {
                 t.sendResponseHeaders(405, -1);
             }
         }
     }
 
+    // ?granularity=minute|hour&from=&to=&level=&limit=  (from/to compare against bucket starts)
+    static class TimeseriesHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            addCORSHeaders(t);
+            if (!"GET".equals(t.getRequestMethod())) {
+                t.sendResponseHeaders(405, -1);
+                return;
+            }
+            Map<String, String> params = TransactionQuery.parseParams(t.getRequestURI().getRawQuery());
+            RiskRollups.Granularity g;
+            int limit;
+            try {
+                String granularity = params.getOrDefault("granularity", "hour");
+                try {
+                    g = RiskRollups.Granularity.valueOf(granularity.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("granularity must be 'minute' or 'hour'");
+                }
+                String limitParam = params.get("limit");
+                try {
+                    limit = limitParam == null || limitParam.isEmpty() ? RiskRollups.DEFAULT_POINTS
+                            : Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("limit must be a number");
+                }
+                if (limit < 1 || limit > RiskRollups.MAX_POINTS)
+                    throw new IllegalArgumentException("limit must be between 1 and " + RiskRollups.MAX_POINTS);
+            } catch (IllegalArgumentException e) {
+                sendError(t, 400, e.getMessage());
+                return;
+            }
+            String from = emptyToNull(params.get("from"));
+            String to = emptyToNull(params.get("to"));
+            String level = emptyToNull(params.get("level"));
+            String lvl = level == null ? null : level.toUpperCase();
+            JsonStreaming.send(t, DatabaseManager.dataVersion(),
+                    w -> DatabaseManager.streamTimeseries(g, from, to, lvl, limit, w));
+        }
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    private static void sendError(HttpExchange t, int status, String message) throws IOException {
+        JsonStreaming.sendStatus(t, status, w -> {
+            w.beginObject();
+            w.name("error").value(message);
+            w.endObject();
+        });
+    }
+
     private static void sendResponse(HttpExchange t, String response) throws IOException {
         byte[] bytes = response.getBytes("UTF-8");
         t.sendResponseHeaders(200, bytes.length);
@@ -70,15 +279,26 @@ public class RiskApiServer {
 
     // Integration with Python Microservice
     private static void callPythonAnalysis() {
+        long start = System.nanoTime();
         try {
             // Antigravity: Python is on localhost within the same container
             java.net.URL url = new java.net.URL("http://127.0.0.1:5000/analyze");
             java.net.HttpURLConnection con = (java.net.HttpURLConnection) url.openConnection();
             con.setRequestMethod("POST");
+            con.setConnectTimeout(2000);
+            con.setReadTimeout(30000);
             int responseCode = con.getResponseCode();
             System.out.println("Python Analysis Triggered. Response Code: " + responseCode);
+            // The job rewrites risk_results outside the ingest path.
+            if (responseCode == 200)
+                DatabaseManager.rebuildRollups();
+            else
+                PYTHON_ERRORS.increment();
         } catch (Exception e) {
+            PYTHON_ERRORS.increment();
             System.err.println("Failed to call Python Engine: " + e.getMessage());
+        } finally {
+            PYTHON_TIMER.recordSince(start);
         }
     }
 
@@ -90,7 +310,8 @@ public class RiskApiServer {
                 DatabaseManager.addMockData(5);
 
                 // Trigger Python Analysis asynchronously
-                new Thread(() -> callPythonAnalysis()).start();
+                if (PYTHON_ANALYSIS)
+                    backgroundTasks.submit("python-analysis", RiskApiServer::callPythonAnalysis);
 
                 String response = "{\"message\": \"Simulation and Analysis triggered\", \"added\": 5}";
                 sendResponse(t, response);
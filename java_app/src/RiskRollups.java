@@ -0,0 +1,250 @@
+package src;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Incrementally maintained aggregates over risk_results:
+//   risk_level_totals  one row per level (what /api/stats returns)
+//   risk_rollups       per-minute and per-hour buckets of count, summed amount and max score per level
+// BulkIngestor folds each commit chunk into a Delta and upserts it inside the same transaction, so the
+// summary tables never disagree with the rows they describe. Reads touch a handful of rows regardless
+// of history size. Writes that bypass the ingest path (the Python batch job) are repaired with rebuild().
+// Every rebuild (and Rescorer's swap) bumps risk_generation, so a server can tell when another process
+// replaced the scores under its caches.
+// Usage: java -cp "lib/*:bin" src.RiskRollups rebuild
+public class RiskRollups {
+    public static final int DEFAULT_POINTS = 500;
+    public static final int MAX_POINTS = 5000;
+
+    public enum Granularity {
+        MINUTE(16), HOUR(13);
+
+        // Length of the "yyyy-MM-dd HH:mm" / "yyyy-MM-dd HH" prefix that names the bucket.
+        final int prefix;
+
+        Granularity(int prefix) {
+            this.prefix = prefix;
+        }
+
+        String key() {
+            return name().toLowerCase();
+        }
+
+        // Null for timestamps too short to bucket.
+        String bucketOf(String timestamp) {
+            if (timestamp == null || timestamp.length() < prefix)
+                return null;
+            String b = timestamp.substring(0, prefix).replace('T', ' ');
+            return this == HOUR ? b + ":00" : b;
+        }
+
+        String bucketSql(String column) {
+            String b = "replace(substr(" + column + ", 1, " + prefix + "), 'T', ' ')";
+            return this == HOUR ? b + " || ':00'" : b;
+        }
+    }
+
+    public static List<String> ddl() {
+        List<String> ddl = new ArrayList<>();
+        ddl.add("CREATE TABLE IF NOT EXISTS risk_level_totals (risk_level TEXT PRIMARY KEY, txn_count INTEGER NOT NULL) WITHOUT ROWID");
+        ddl.add("CREATE TABLE IF NOT EXISTS risk_rollups (granularity TEXT NOT NULL, bucket_start TEXT NOT NULL, risk_level TEXT NOT NULL, "
+                + "txn_count INTEGER NOT NULL, amount_sum REAL NOT NULL, max_score REAL NOT NULL, "
+                + "PRIMARY KEY (granularity, bucket_start, risk_level)) WITHOUT ROWID");
+        ddl.add("CREATE TABLE IF NOT EXISTS risk_generation (id INTEGER PRIMARY KEY CHECK (id = 1), generation INTEGER NOT NULL)");
+        return ddl;
+    }
+
+    private static final String UPSERT_TOTAL = "INSERT INTO risk_level_totals (risk_level, txn_count) VALUES (?, ?) "
+            + "ON CONFLICT(risk_level) DO UPDATE SET txn_count = txn_count + excluded.txn_count";
+    private static final String UPSERT_BUCKET = "INSERT INTO risk_rollups (granularity, bucket_start, risk_level, txn_count, amount_sum, max_score) "
+            + "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT(granularity, bucket_start, risk_level) DO UPDATE SET "
+            + "txn_count = txn_count + excluded.txn_count, amount_sum = amount_sum + excluded.amount_sum, "
+            + "max_score = MAX(max_score, excluded.max_score)";
+
+    private static class Bucket {
+        long count;
+        double amountSum;
+        double maxScore = Double.NEGATIVE_INFINITY;
+
+        void add(double amount, double score) {
+            count++;
+            amountSum += amount;
+            maxScore = Math.max(maxScore, score);
+        }
+    }
+
+    // Aggregates for one commit chunk. A chunk spans few distinct buckets, so the flush is a handful of upserts.
+    public static class Delta {
+        private final Map<String, Long> totals = new HashMap<>();
+        private final Map<String, Bucket> buckets = new HashMap<>(); // "granularity|bucket|level"
+
+        public void add(TransactionRecord r) {
+            if (!r.hasRisk())
+                return;
+            totals.merge(r.riskLevel, 1L, Long::sum);
+            for (Granularity g : Granularity.values()) {
+                String bucket = g.bucketOf(r.timestamp);
+                if (bucket != null)
+                    buckets.computeIfAbsent(g.key() + "|" + bucket + "|" + r.riskLevel, k -> new Bucket())
+                            .add(r.amount, r.riskScore);
+            }
+        }
+
+        public boolean isEmpty() {
+            return totals.isEmpty();
+        }
+
+        // Must run inside the transaction that inserted the rows.
+        public void flush(ConnectionPool.PooledConnection writer) throws SQLException {
+            if (isEmpty())
+                return;
+            PreparedStatement total = writer.prepare(UPSERT_TOTAL);
+            for (Map.Entry<String, Long> e : totals.entrySet()) {
+                total.setString(1, e.getKey());
+                total.setLong(2, e.getValue());
+                total.addBatch();
+            }
+            total.executeBatch();
+
+            PreparedStatement bucket = writer.prepare(UPSERT_BUCKET);
+            for (Map.Entry<String, Bucket> e : buckets.entrySet()) {
+                String[] key = e.getKey().split("\\|", 3);
+                Bucket b = e.getValue();
+                bucket.setString(1, key[0]);
+                bucket.setString(2, key[1]);
+                bucket.setString(3, key[2]);
+                bucket.setLong(4, b.count);
+                bucket.setDouble(5, b.amountSum);
+                bucket.setDouble(6, b.maxScore);
+                bucket.addBatch();
+            }
+            bucket.executeBatch();
+            totals.clear();
+            buckets.clear();
+        }
+    }
+
+    public static Map<String, Long> readLevelTotals(ConnectionPool.PooledConnection pc) throws SQLException {
+        Map<String, Long> totals = new HashMap<>();
+        try (ResultSet rs = pc.prepare("SELECT risk_level, txn_count FROM risk_level_totals").executeQuery()) {
+            while (rs.next())
+                totals.put(rs.getString(1), rs.getLong(2));
+        }
+        return totals;
+    }
+
+    // 0 until the first rebuild.
+    public static long readGeneration(ConnectionPool.PooledConnection pc) throws SQLException {
+        try (ResultSet rs = pc.prepare("SELECT generation FROM risk_generation WHERE id = 1").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Recomputes both tables from risk_results in one transaction on the writer connection.
+    public static void rebuild(ConnectionPool.PooledConnection writer) throws SQLException {
+        Connection conn = writer.raw();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            recompute(stmt);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // The body of rebuild(), for callers that already hold an open transaction.
+    static void recompute(Statement stmt) throws SQLException {
+        for (String ddl : ddl())
+            stmt.execute(ddl);
+        stmt.executeUpdate("DELETE FROM risk_level_totals");
+        stmt.executeUpdate("DELETE FROM risk_rollups");
+        stmt.executeUpdate("INSERT INTO risk_level_totals (risk_level, txn_count) "
+                + "SELECT risk_level, COUNT(*) FROM risk_results WHERE risk_level IS NOT NULL GROUP BY risk_level");
+        for (Granularity g : Granularity.values()) {
+            stmt.executeUpdate("INSERT INTO risk_rollups (granularity, bucket_start, risk_level, txn_count, amount_sum, max_score) "
+                    + "SELECT '" + g.key() + "', " + g.bucketSql("r.timestamp") + " AS bucket, r.risk_level, "
+                    + "COUNT(*), TOTAL(t.amount), MAX(r.risk_score) "
+                    + "FROM risk_results r LEFT JOIN transactions t ON r.transaction_id = t.transaction_id "
+                    + "WHERE r.risk_level IS NOT NULL AND length(r.timestamp) >= " + g.prefix + " "
+                    + "GROUP BY bucket, r.risk_level");
+        }
+        stmt.executeUpdate("INSERT INTO risk_generation (id, generation) VALUES (1, 1) "
+                + "ON CONFLICT(id) DO UPDATE SET generation = generation + 1");
+    }
+
+    // Buckets for one granularity, oldest first. Without from/to this is the newest `limit` rows.
+    // Writes {"granularity": ..., "buckets": [{"bucket", "level", "count", "amount", "maxScore"}, ...]}.
+    // Returns the number of buckets written.
+    public static int writeTimeseries(ConnectionPool.PooledConnection pc, Granularity g, String from, String to,
+            String level, int limit, JsonWriter w) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT bucket_start, risk_level, txn_count, amount_sum, max_score FROM risk_rollups WHERE granularity = ?");
+        if (from != null)
+            sql.append(" AND bucket_start >= ?");
+        if (to != null)
+            sql.append(" AND bucket_start < ?");
+        if (level != null)
+            sql.append(" AND risk_level = ?");
+        sql.append(" ORDER BY bucket_start DESC, risk_level LIMIT ?");
+
+        PreparedStatement ps = pc.prepare(sql.toString());
+        int i = 1;
+        ps.setString(i++, g.key());
+        if (from != null)
+            ps.setString(i++, from);
+        if (to != null)
+            ps.setString(i++, to);
+        if (level != null)
+            ps.setString(i++, level);
+        ps.setInt(i, limit);
+
+        List<Object[]> rows = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next())
+                rows.add(new Object[] { rs.getString(1), rs.getString(2), rs.getLong(3), rs.getDouble(4), rs.getDouble(5) });
+        }
+
+        w.beginObject();
+        w.name("granularity").value(g.key());
+        w.name("buckets").beginArray();
+        for (int r = rows.size() - 1; r >= 0; r--) {
+            Object[] row = rows.get(r);
+            w.beginObject();
+            w.name("bucket").value((String) row[0]);
+            w.name("level").value((String) row[1]);
+            w.name("count").value((long) row[2]);
+            w.name("amount").value(Math.round((double) row[3] * 100) / 100.0);
+            w.name("maxScore").value((double) row[4]);
+            w.endObject();
+        }
+        w.endArray();
+        w.endObject();
+        return rows.size();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1 || !args[0].equals("rebuild")) {
+            System.out.println("Usage: java -cp \"lib/*:bin\" src.RiskRollups rebuild");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        DatabaseManager.initializeDatabaseIfEmpty();
+        DatabaseManager.rebuildRollups();
+        System.out.printf("Rollups rebuilt in %.1f ms: %s%n", (System.nanoTime() - start) / 1e6,
+                DatabaseManager.queryRiskStats());
+        System.exit(0);
+    }
+}
@@ -0,0 +1,184 @@
+package src;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Streaming port of the rule set in python_engine/risk_engine.py.
+// Customer baselines are kept incrementally, so each event is scored in O(1)
+// instead of reloading the transactions table.
+public class RiskScoringEngine {
+    // Rule thresholds (same as detect_rule_based_anomalies)
+    public static final double AMOUNT_MULTIPLIER = 3.0;
+    public static final double MIN_SIGNIFICANT_AVG = 10.0;
+    public static final double ROUND_AMOUNT_MIN = 1000.0;
+    public static final String SUSPICIOUS_LOCATION = "Unknown_Location";
+
+    private static final Metrics.Timer SCORE_TIMER = Metrics.timer("scoring_seconds",
+            "RiskScoringEngine.score: profile update, rules and (if enabled) velocity and the Isolation Forest");
+
+    private final CustomerProfileMap profiles;
+    private volatile VelocityEngine velocityEngine; // null = no burst rules
+    private volatile AnomalyDetector anomalyDetector; // null = rules only
+
+    private final LongAdder scored = new LongAdder();
+    private final LongAdder scoringNanos = new LongAdder();
+    private final LongAdder flagged = new LongAdder();
+
+    public RiskScoringEngine(int expectedCustomers) {
+        this.profiles = new CustomerProfileMap(expectedCustomers);
+    }
+
+    // Rebuilds baselines with one aggregate query instead of loading every row.
+    public void loadProfiles(ConnectionPool pool) throws SQLException {
+        try (ConnectionPool.PooledConnection pc = pool.acquireRead();
+                ResultSet rs = pc.prepare("SELECT customer_id, COUNT(*), AVG(amount), SUM(amount * amount) "
+                        + "FROM transactions WHERE amount IS NOT NULL GROUP BY customer_id").executeQuery()) {
+            synchronized (profiles) {
+                profiles.clear();
+                while (rs.next()) {
+                    long n = rs.getLong(2);
+                    double mean = rs.getDouble(3);
+                    double sumSq = rs.getDouble(4);
+                    profiles.put(rs.getInt(1), n, mean, sumSq - n * mean * mean);
+                }
+            }
+        }
+    }
+
+    // Resets the profiles of the given records' customers to their committed rows, e.g. after the chunk
+    // that scored them rolled back. The caller keeps other scorers out (BulkIngestor holds the writer).
+    public void reloadProfiles(ConnectionPool.PooledConnection pc, List<TransactionRecord> records) throws SQLException {
+        Set<Integer> customers = new HashSet<>();
+        for (TransactionRecord r : records)
+            customers.add(r.customerId);
+        PreparedStatement ps = pc.prepare("SELECT COUNT(*), AVG(amount), SUM(amount * amount) FROM transactions "
+                + "WHERE customer_id = ? AND amount IS NOT NULL");
+        for (int customer : customers) {
+            ps.setInt(1, customer);
+            try (ResultSet rs = ps.executeQuery()) {
+                long n = rs.next() ? rs.getLong(1) : 0;
+                double mean = n > 0 ? rs.getDouble(2) : 0;
+                double sumSq = n > 0 ? rs.getDouble(3) : 0;
+                synchronized (profiles) {
+                    profiles.remove(customer);
+                    profiles.put(customer, n, mean, sumSq - n * mean * mean);
+                }
+            }
+        }
+    }
+
+    // {count, mean} of the customer's profile, zeros when there is none.
+    double[] profile(int customer) {
+        synchronized (profiles) {
+            int slot = profiles.find(customer);
+            return slot < 0 ? new double[2] : new double[] { profiles.count(slot), profiles.mean(slot) };
+        }
+    }
+
+    public void setVelocityEngine(VelocityEngine velocity) {
+        this.velocityEngine = velocity;
+    }
+
+    public VelocityEngine velocityEngine() {
+        return velocityEngine;
+    }
+
+    public void setAnomalyDetector(AnomalyDetector detector) {
+        this.anomalyDetector = detector;
+    }
+
+    public AnomalyDetector anomalyDetector() {
+        return anomalyDetector;
+    }
+
+    // Folds the transaction into its customer's profile, then applies the rules against the updated baseline.
+    public TransactionRecord score(TransactionRecord r) {
+        long start = System.nanoTime();
+        double avg;
+        synchronized (profiles) {
+            avg = profiles.mean(profiles.add(r.customerId, r.amount));
+        }
+        applyRules(r, avg);
+        VelocityEngine velocity = velocityEngine;
+        if (velocity != null)
+            velocity.apply(r);
+        AnomalyDetector detector = anomalyDetector;
+        if (detector != null)
+            detector.apply(r);
+        long elapsed = System.nanoTime() - start;
+        scoringNanos.add(elapsed);
+        SCORE_TIMER.record(elapsed);
+        scored.increment();
+        if (r.riskScore > 0)
+            flagged.increment();
+        return r;
+    }
+
+    public static TransactionRecord applyRules(TransactionRecord r, double avg) {
+        int score = 0;
+        StringBuilder reasons = new StringBuilder();
+
+        // Rule 1: High Amount ( > 3x average ), only if avg is significant
+        if (r.amount > avg * AMOUNT_MULTIPLIER && avg > MIN_SIGNIFICANT_AVG) {
+            score += 50;
+            appendReason(reasons, "Amount $" + r.amount + " > 3x Avg ($" + Math.round(avg * 100) / 100.0 + ")");
+        }
+
+        // Rule 2: Round Numbers (often a sign of fraud if high)
+        if (r.amount > ROUND_AMOUNT_MIN && r.amount % 100 == 0) {
+            score += 20;
+            appendReason(reasons, "Large round number transaction");
+        }
+
+        // Rule 3: Unknown Location
+        if (SUSPICIOUS_LOCATION.equals(r.location)) {
+            score += 30;
+            appendReason(reasons, "Suspicious Location");
+        }
+
+        score = Math.min(score, 100);
+        String reason = score > 0 ? reasons.toString() : "Normal Activity";
+        return r.withRisk(score, levelFor(score), reason, 0.0);
+    }
+
+    public static String levelFor(double score) {
+        if (score >= 80)
+            return "CRITICAL";
+        if (score >= 50)
+            return "HIGH";
+        if (score >= 20)
+            return "MEDIUM";
+        return "LOW";
+    }
+
+    private static void appendReason(StringBuilder sb, String reason) {
+        if (sb.length() > 0)
+            sb.append("; ");
+        sb.append(reason);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long n = scored.sum();
+        m.put("scored", n);
+        m.put("flagged", flagged.sum());
+        synchronized (profiles) {
+            m.put("customers", profiles.size());
+        }
+        m.put("avgScoreMicros", n == 0 ? 0.0 : scoringNanos.sum() / 1000.0 / n);
+        VelocityEngine velocity = velocityEngine;
+        if (velocity != null)
+            m.put("velocity", velocity.getMetrics());
+        AnomalyDetector detector = anomalyDetector;
+        if (detector != null)
+            m.put("isolationForest", detector.getMetrics());
+        return m;
+    }
+}
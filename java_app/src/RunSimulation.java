@@ -1,10 +1,29 @@
 package src;
 
+import java.util.Map;
+
+// Synthetic load for capacity tests; see WorkloadGenerator for the model.
+// Usage: java -cp "lib/*:bin" src.RunSimulation [key=value ...]
+//   count=2000 seed=42 producers=<cores-1> customers=3 vendors=6 zipf=0 fraudRate=0.02
+//   rate=0 (tx/s, 0 = unthrottled) start=2024-01-01T00:00:00 file=out.csv batchSize=1000 commitInterval=20000
+// Example: java -cp "lib/*:bin" src.RunSimulation count=5000000 customers=100000 vendors=500 zipf=1.1 file=load.csv
 public class RunSimulation {
-    public static void main(String[] args) {
-        System.out.println("Starting heavy simulation (Populating 2000 records)...");
-        // Reuse existing logic but more of it
-        DatabaseManager.addMockData(2000);
-        System.out.println("Simulation Data Populated Successfully.");
+    public static void main(String[] args) throws Exception {
+        WorkloadGenerator.Config config;
+        try {
+            config = WorkloadGenerator.Config.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        System.out.printf("Starting simulation: %,d transactions, %d customers (zipf %.2f), %d vendors, "
+                + "fraud rate %.3f, rate %s, seed %d, %d producers -> %s%n", config.count, config.customers,
+                config.zipf, config.vendors, config.fraudRate, config.rate > 0 ? config.rate + " tx/s" : "unthrottled",
+                config.seed, config.producers, config.file != null ? config.file : "database");
+        Map<String, Object> summary = new WorkloadGenerator(config).run();
+        System.out.println("Simulation complete: " + summary);
+        System.exit(0);
     }
 }
@@ -0,0 +1,230 @@
+package src;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Request executors for RiskApiServer, with admission control.
+// Modes:
+//   virtual - one virtual thread per request (JDK 21+; falls back to pool on older runtimes)
+//   pool    - fixed platform pool; requests beyond threads + backlog are shed with 503
+//   single  - the JDK default (dispatcher thread runs every handler), kept for comparison
+// Shed requests never wait behind admitted ones: they go to a small rejector pool that answers 503
+// right away, so the worker queue never holds more than threads + backlog requests.
+// Two timeouts apply to admitted requests: one on the time spent queued (503 before the handler
+// runs) and a handler deadline, after which a request still without a response is disconnected.
+public class ServerExecutors {
+    public enum Mode {
+        VIRTUAL, POOL, SINGLE
+    }
+
+    public static Mode parseMode(String value) {
+        if (value == null || value.isEmpty())
+            return Mode.POOL;
+        try {
+            return Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown executor mode '" + value + "', using pool");
+            return Mode.POOL;
+        }
+    }
+
+    // Returns null for SINGLE, which HttpServer treats as "run on the dispatcher".
+    @SuppressWarnings("fallthrough") // VIRTUAL falls back to the pool below JDK 21
+    public static AdmissionExecutor create(Mode mode, int threads, int backlog, long queueTimeoutMs,
+            long handlerTimeoutMs) {
+        switch (mode) {
+            case SINGLE:
+                return null;
+            case VIRTUAL: {
+                ExecutorService vt = newVirtualThreadExecutor();
+                if (vt != null)
+                    return new AdmissionExecutor("virtual", vt, threads + backlog, queueTimeoutMs, handlerTimeoutMs);
+                System.out.println("Virtual threads need JDK 21+; falling back to pool mode");
+            }
+            // fall through
+            default: {
+                AtomicInteger n = new AtomicInteger();
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), r -> { // holds at most threads + backlog, see execute()
+                            Thread t = new Thread(r, "api-worker-" + n.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+                return new AdmissionExecutor("pool", pool, threads + backlog, queueTimeoutMs, handlerTimeoutMs);
+            }
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // Admission decision made when the dispatcher hands off the exchange; read by the filter on the worker.
+    private static final ThreadLocal<long[]> ADMISSION = new ThreadLocal<>();
+
+    private static final int REJECTOR_THREADS = 2;
+    private static final int REJECTOR_BACKLOG = 1024;
+
+    public static class AdmissionExecutor implements Executor {
+        private final String name;
+        private final ExecutorService delegate;
+        // Reads the request and writes the 503 for shed exchanges (HttpServer only parses the request
+        // on the executor thread). When it is backed up too, the dispatcher answers them itself.
+        private final ThreadPoolExecutor rejector;
+        private final ScheduledThreadPoolExecutor deadlines;
+        private final int maxPending;
+        private final long queueTimeoutNanos;
+        private final long handlerTimeoutNanos;
+
+        private final AtomicInteger pending = new AtomicInteger();
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder handlerTimeouts = new LongAdder();
+
+        AdmissionExecutor(String name, ExecutorService delegate, int maxPending, long queueTimeoutMs,
+                long handlerTimeoutMs) {
+            this.name = name;
+            this.delegate = delegate;
+            this.maxPending = maxPending;
+            this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+            this.handlerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(handlerTimeoutMs);
+            this.deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "api-deadlines");
+                t.setDaemon(true);
+                return t;
+            });
+            deadlines.setRemoveOnCancelPolicy(true);
+            AtomicInteger n = new AtomicInteger();
+            this.rejector = new ThreadPoolExecutor(REJECTOR_THREADS, REJECTOR_THREADS, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(REJECTOR_BACKLOG), r -> {
+                        Thread t = new Thread(r, "api-rejector-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            long enqueued = System.nanoTime();
+            if (pending.incrementAndGet() > maxPending) {
+                pending.decrementAndGet();
+                rejector.execute(() -> run(task, enqueued, 1));
+                return;
+            }
+            delegate.execute(() -> {
+                try {
+                    run(task, enqueued, 0);
+                } finally {
+                    pending.decrementAndGet();
+                }
+            });
+        }
+
+        private static void run(Runnable task, long enqueued, long overloaded) {
+            ADMISSION.set(new long[] { enqueued, overloaded });
+            try {
+                task.run();
+            } finally {
+                ADMISSION.remove();
+            }
+        }
+
+        // deadline: apply the handler timeout (off for open-ended responses such as event streams).
+        public Filter filter(boolean deadline) {
+            return new Filter() {
+                @Override
+                public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                    long[] admission = ADMISSION.get();
+                    if (admission != null && admission[1] == 1) {
+                        shed.increment();
+                        reject(exchange, "Server busy");
+                        return;
+                    }
+                    if (admission != null && System.nanoTime() - admission[0] > queueTimeoutNanos) {
+                        timedOut.increment();
+                        reject(exchange, "Request timed out in queue");
+                        return;
+                    }
+                    accepted.increment();
+                    if (!deadline || handlerTimeoutNanos <= 0) {
+                        chain.doFilter(exchange);
+                        return;
+                    }
+                    ScheduledFuture<?> watchdog = deadlines.schedule(() -> expire(exchange), handlerTimeoutNanos,
+                            TimeUnit.NANOSECONDS);
+                    try {
+                        chain.doFilter(exchange);
+                    } finally {
+                        watchdog.cancel(false);
+                    }
+                }
+
+                @Override
+                public String description() {
+                    return "Load shedding / queue and handler timeouts";
+                }
+            };
+        }
+
+        // Past the deadline without a response started: drop the connection (as the JDK's maxRspTime does
+        // for every exchange) so the client is not left waiting on a stuck handler. A response already
+        // under way is left to finish. The handler keeps running until its current call returns, and
+        // fails on its next write.
+        private void expire(HttpExchange exchange) {
+            if (exchange.getResponseCode() != -1)
+                return;
+            handlerTimeouts.increment();
+            exchange.close();
+        }
+
+        public void shutdown() {
+            delegate.shutdownNow();
+            rejector.shutdownNow();
+            deadlines.shutdownNow();
+        }
+
+        public Map<String, Object> getMetrics() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("mode", name);
+            m.put("pending", pending.get());
+            m.put("maxPending", maxPending);
+            m.put("accepted", accepted.sum());
+            m.put("shed", shed.sum());
+            m.put("timedOut", timedOut.sum());
+            m.put("handlerTimeouts", handlerTimeouts.sum());
+            return m;
+        }
+    }
+
+    private static void reject(HttpExchange t, String message) throws IOException {
+        byte[] body = ("{\"error\": \"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+        t.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+        t.getResponseHeaders().add("Retry-After", "1");
+        t.getResponseHeaders().add("Content-Type", "application/json");
+        t.sendResponseHeaders(503, body.length);
+        try (OutputStream os = t.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package src;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+// Timestamp text <-> epoch millis for the binary stores (TransactionLog, ColumnarSnapshot).
+// The local wall-clock text is read as UTC, so values round-trip to the same text.
+public class Timestamps {
+    public static final long NONE = Long.MIN_VALUE; // null timestamp
+    private static final DateTimeFormatter TEXT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    // Fast path for "yyyy-MM-dd HH:mm:ss[.fraction]" (what the ingest paths produce); anything else
+    // goes through LocalDateTime.parse, which also rejects dates the fast path does not accept (Feb 30,
+    // Apr 31, ...). The fraction is truncated to milliseconds.
+    public static long epochMillis(String ts) {
+        if (ts == null)
+            return NONE;
+        int len = ts.length();
+        if (len >= 19 && ts.charAt(4) == '-' && ts.charAt(7) == '-' && (ts.charAt(10) == ' ' || ts.charAt(10) == 'T')
+                && ts.charAt(13) == ':' && ts.charAt(16) == ':') {
+            int year = digits(ts, 0, 4), month = digits(ts, 5, 2), day = digits(ts, 8, 2);
+            int hour = digits(ts, 11, 2), minute = digits(ts, 14, 2), second = digits(ts, 17, 2);
+            int millis = 0;
+            boolean ok = year >= 0 && month >= 1 && month <= 12 && day >= 1
+                    && (day <= 28 || day <= Month.of(month).length(Year.isLeap(year))) && hour >= 0 && hour < 24
+                    && minute >= 0 && minute < 60 && second >= 0 && second < 60;
+            if (ok && len > 19) {
+                ok = ts.charAt(19) == '.';
+                for (int i = 20, scale = 100; ok && i < len; i++, scale /= 10) {
+                    int d = ts.charAt(i) - '0';
+                    ok = d >= 0 && d <= 9;
+                    millis += d * scale;
+                }
+            }
+            if (ok) {
+                // Days from civil (proleptic Gregorian), as in java.time.LocalDate.toEpochDay.
+                long y = month <= 2 ? year - 1 : year;
+                long era = Math.floorDiv(y, 400);
+                long yoe = y - era * 400;
+                long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+                long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+                long epochDay = era * 146097 + doe - 719468;
+                return ((epochDay * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+            }
+        }
+        return LocalDateTime.parse(ts.trim().replace(' ', 'T')).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static int digits(String s, int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9)
+                return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    // Wall-clock time as stored text; sub-millisecond digits are dropped so every ingest path stores the
+    // same text for the same instant.
+    public static String format(LocalDateTime time) {
+        return TEXT.format(time);
+    }
+
+    public static String format(long millis) {
+        if (millis == NONE)
+            return null;
+        return TEXT.format(LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,558 @@
+package src;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+// Append-only, memory-mapped log of fixed-width transaction records in front of SQLite.
+// append() copies a record into a mapped segment file and returns: bursts never wait on the
+// SQLite write lock. A compactor thread drains the log into transactions/risk_results through
+// BulkIngestor in large chunks, and stores the last drained sequence number in txlog_checkpoint
+// inside the same SQLite transaction, so every record is applied exactly once.
+// On open, segments are scanned up to the last record with a valid checksum (a torn tail from a
+// crash is discarded) and everything after the checkpoint is replayed by the compactor.
+//
+// Record layout (48 bytes, little-endian):
+//   seq long | customer int | vendor int | amount double | epochMillis long | location int | status int | reserved int | check int
+// Timestamps are stored as epoch millis of the local wall-clock time (read as UTC), so they
+// round-trip to the same "yyyy-MM-dd HH:mm:ss.SSS" text. Strings are interned in strings.dict.
+// Records are stored unscored; the compactor scores them on the way into SQLite.
+public class TransactionLog implements AutoCloseable {
+    public static final int RECORD_BYTES = 48;
+    private static final int HEADER_BYTES = 64;
+    private static final long MAGIC = 0x54584C4F47303031L; // "TXLOG001"
+
+    private final Path dir;
+    private final String name;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final ConnectionPool pool;
+    private final BulkIngestor ingestor;
+    private final int maxBatch;
+    private final long maxDelayMs;
+
+    // Interned strings; id 0 is null.
+    private final ConcurrentHashMap<String, Integer> stringIds = new ConcurrentHashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final FileChannel dictionary;
+
+    private static class Segment {
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer map; // appender's view
+        final java.nio.ByteBuffer reader; // compactor's view of the same pages
+        final long firstSeq;
+        int count;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer map, long firstSeq) {
+            this.path = path;
+            this.channel = channel;
+            this.map = map;
+            this.reader = map.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            this.firstSeq = firstSeq;
+        }
+
+        long lastSeq() {
+            return firstSeq + count - 1;
+        }
+    }
+
+    // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition spaceFreed = lock.newCondition();
+    private final Condition appended = lock.newCondition();
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<Path> undeleted = new ArrayList<>(); // retired segment files still to delete
+    private long nextSeq;
+
+    private volatile long publishedSeq; // every record <= this is fully written
+    private volatile long drainedSeq; // every record <= this is in SQLite
+    private boolean checkpointStale; // compactor thread only: a compaction failed part-way
+    private volatile boolean running;
+    private Thread compactor;
+
+    // Metrics
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder appendStalls = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder compactedRecords = new LongAdder();
+    private final LongAdder compactionNanos = new LongAdder();
+    private final LongAccumulator maxCompactionNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder compactionFailures = new LongAdder();
+    private long recoveredRecords;
+    private long discardedTailBytes;
+    private long recoveryScanNanos;
+
+    // The ingestor must write through `pool`; the checkpoint lives in the same database.
+    public TransactionLog(Path dir, ConnectionPool pool, BulkIngestor ingestor, int segmentBytes, int maxSegments,
+            int maxBatch, long maxDelayMs) throws IOException, SQLException {
+        this.dir = dir;
+        this.name = dir.toAbsolutePath().normalize().toString();
+        this.recordsPerSegment = Math.max(1, (segmentBytes - HEADER_BYTES) / RECORD_BYTES);
+        this.maxSegments = Math.max(2, maxSegments);
+        this.pool = pool;
+        this.ingestor = ingestor;
+        this.maxBatch = maxBatch;
+        this.maxDelayMs = maxDelayMs;
+
+        Files.createDirectories(dir);
+        Path dict = dir.resolve("strings.dict");
+        if (Files.exists(dict)) {
+            for (String s : Files.readAllLines(dict, StandardCharsets.UTF_8))
+                intern(s, false);
+        }
+        this.dictionary = FileChannel.open(dict, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        recover();
+    }
+
+    // Scans existing segments, drops the torn tail, and positions the appender after the last valid record.
+    private void recover() throws IOException, SQLException {
+        long start = System.nanoTime();
+        long checkpoint = readCheckpoint();
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            s.filter(p -> p.getFileName().toString().endsWith(".seg")).sorted().forEach(files::add);
+        }
+
+        long expected = -1;
+        for (Path file : files) {
+            Segment seg = map(file, -1);
+            if (expected != -1 && seg.firstSeq != expected) {
+                // A gap means later files cannot be trusted; stop at the last contiguous record.
+                retire(seg);
+                continue;
+            }
+            int n = 0;
+            while (n < recordsPerSegment && valid(seg.reader, slot(n), seg.firstSeq + n))
+                n++;
+            seg.count = n;
+            if (n < recordsPerSegment)
+                discardedTailBytes += zeroTail(seg, n);
+            segments.add(seg);
+            expected = seg.firstSeq + n;
+            if (n < recordsPerSegment)
+                expected = -2; // anything after a partial segment is discarded
+        }
+
+        if (!segments.isEmpty() && segments.get(segments.size() - 1).lastSeq() < checkpoint) {
+            // SQLite is ahead of the log (files lost or restored from an older copy): nothing here is new.
+            System.out.println("Transaction log is behind the checkpoint (" + checkpoint + "); discarding it");
+            for (Segment seg : segments)
+                retire(seg);
+            segments.clear();
+        }
+
+        if (segments.isEmpty()) {
+            // Fresh log (or deleted files): continue numbering after what SQLite already has.
+            nextSeq = checkpoint + 1;
+        } else {
+            Segment last = segments.get(segments.size() - 1);
+            nextSeq = last.firstSeq + last.count;
+            if (segments.get(0).firstSeq > checkpoint + 1)
+                System.out.println("Transaction log starts after the checkpoint; records " + (checkpoint + 1) + ".."
+                        + (segments.get(0).firstSeq - 1) + " are missing");
+        }
+        publishedSeq = nextSeq - 1;
+        drainedSeq = Math.max(checkpoint, segments.isEmpty() ? checkpoint : segments.get(0).firstSeq - 1);
+        recoveredRecords = Math.max(0, publishedSeq - drainedSeq);
+        deleteDrainedSegments();
+        recoveryScanNanos = System.nanoTime() - start;
+    }
+
+    public void start() {
+        running = true;
+        compactor = new Thread(this::compactLoop, "txlog-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    // Returns the record's sequence number. Blocks only if maxSegments are full of undrained records.
+    public long append(TransactionRecord r) throws InterruptedException, IOException {
+        int location = intern(r.location, true);
+        int status = intern(r.status, true);
+        long millis = Timestamps.epochMillis(r.timestamp);
+
+        lock.lock();
+        try {
+            Segment seg = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (seg == null || seg.count == recordsPerSegment)
+                seg = roll();
+            long seq = nextSeq++;
+            int at = slot(seg.count);
+            MappedByteBuffer m = seg.map;
+            m.putLong(at, seq);
+            m.putInt(at + 8, r.customerId);
+            m.putInt(at + 12, r.vendorId);
+            m.putDouble(at + 16, r.amount);
+            m.putLong(at + 24, millis);
+            m.putInt(at + 32, location);
+            m.putInt(at + 36, status);
+            m.putInt(at + 40, 0);
+            m.putInt(at + 44, check(seq, r.customerId, r.vendorId, Double.doubleToRawLongBits(r.amount), millis,
+                    location, status));
+            seg.count++;
+            publishedSeq = seq;
+            appends.increment();
+            if (seq - drainedSeq >= maxBatch)
+                appended.signal();
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendAll(Iterator<TransactionRecord> records) throws InterruptedException, IOException {
+        long last = -1;
+        while (records.hasNext())
+            last = append(records.next());
+        return last;
+    }
+
+    // Called with lock held.
+    private Segment roll() throws InterruptedException, IOException {
+        while (segments.size() >= maxSegments) {
+            appendStalls.increment();
+            spaceFreed.await(100, TimeUnit.MILLISECONDS);
+            deleteDrainedSegments();
+        }
+        Path file = dir.resolve(String.format("%020d.seg", nextSeq));
+        Segment seg = map(file, nextSeq);
+        segments.add(seg);
+        return seg;
+    }
+
+    private void compactLoop() {
+        while (running || drainedSeq < publishedSeq) {
+            try {
+                long pending = publishedSeq - drainedSeq;
+                if (pending == 0 || (pending < maxBatch && running)) {
+                    lock.lock();
+                    try {
+                        if (publishedSeq - drainedSeq < maxBatch && running)
+                            appended.await(maxDelayMs, TimeUnit.MILLISECONDS);
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (publishedSeq == drainedSeq)
+                        continue;
+                }
+                compactOnce();
+            } catch (InterruptedException e) {
+                if (!running)
+                    continue; // drain what is left, then exit
+            } catch (Exception e) {
+                compactionFailures.increment();
+                System.out.println("Transaction log compaction failed: " + e.getMessage());
+                if (!running)
+                    return; // records stay in the log and are replayed on the next open
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ignored) {
+                    // shutting down
+                }
+            }
+        }
+    }
+
+    // Drains up to maxBatch published records into SQLite. Returns the number applied.
+    // A batch larger than the ingestor's commit interval is applied in several commits, each with its
+    // own checkpoint; after a failure part-way through, the checkpoint (not drainedSeq) says where the
+    // committed chunks end, so the next call resumes there instead of inserting them again.
+    public long compactOnce() throws SQLException, IOException {
+        if (checkpointStale) {
+            drainedSeq = Math.max(drainedSeq, readCheckpoint());
+            checkpointStale = false;
+        }
+        long from = drainedSeq + 1;
+        long to = Math.min(publishedSeq, drainedSeq + maxBatch);
+        if (to < from)
+            return 0;
+        List<TransactionRecord> batch = read(from, to);
+
+        long start = System.nanoTime();
+        try {
+            ingestor.ingest(batch.iterator(), (writer, written) -> writeCheckpoint(writer, from - 1 + written));
+        } catch (SQLException | RuntimeException e) {
+            checkpointStale = true;
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+
+        drainedSeq = to;
+        compactions.increment();
+        compactedRecords.add(batch.size());
+        compactionNanos.add(nanos);
+        maxCompactionNanos.accumulate(nanos);
+
+        lock.lock();
+        try {
+            deleteDrainedSegments();
+            spaceFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return batch.size();
+    }
+
+    private List<TransactionRecord> read(long from, long to) {
+        List<Segment> view;
+        lock.lock();
+        try {
+            view = new ArrayList<>(segments);
+        } finally {
+            lock.unlock();
+        }
+        List<TransactionRecord> out = new ArrayList<>((int) (to - from + 1));
+        for (Segment seg : view) {
+            long first = Math.max(from, seg.firstSeq);
+            long last = Math.min(to, seg.firstSeq + recordsPerSegment - 1);
+            for (long seq = first; seq <= last; seq++) {
+                int at = slot((int) (seq - seg.firstSeq));
+                java.nio.ByteBuffer b = seg.reader;
+                out.add(new TransactionRecord(b.getInt(at + 8), b.getInt(at + 12), b.getDouble(at + 16),
+                        Timestamps.format(b.getLong(at + 24)), string(b.getInt(at + 32)), string(b.getInt(at + 36))));
+            }
+        }
+        return out;
+    }
+
+    // Waits until every record up to seq is in SQLite.
+    public boolean awaitDrained(long seq, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (drainedSeq < seq) {
+            if (System.currentTimeMillis() > deadline)
+                return false;
+            lock.lock();
+            try {
+                appended.signal();
+            } finally {
+                lock.unlock();
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    // Stops the compactor after it drains what is already appended, then unmaps the segments.
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (compactor != null) {
+            compactor.interrupt();
+            try {
+                compactor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            for (Segment seg : segments) {
+                seg.map.force();
+                close(seg);
+            }
+            segments.clear();
+            deleteRetired();
+        } finally {
+            lock.unlock();
+        }
+        dictionary.close();
+    }
+
+    public long publishedSeq() {
+        return publishedSeq;
+    }
+
+    public long drainedSeq() {
+        return drainedSeq;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long n = compactions.sum();
+        m.put("appends", appends.sum());
+        m.put("pending", publishedSeq - drainedSeq);
+        m.put("segments", segments.size());
+        m.put("undeletedSegments", undeleted.size());
+        m.put("appendStalls", appendStalls.sum());
+        m.put("compactions", n);
+        m.put("compactedRecords", compactedRecords.sum());
+        m.put("avgCompactionMs", n == 0 ? 0.0 : compactionNanos.sum() / 1e6 / n);
+        m.put("maxCompactionMs", maxCompactionNanos.get() / 1e6);
+        m.put("compactionFailures", compactionFailures.sum());
+        m.put("recoveredRecords", recoveredRecords);
+        m.put("discardedTailBytes", discardedTailBytes);
+        m.put("recoveryScanMs", recoveryScanNanos / 1e6);
+        return m;
+    }
+
+    // Called with lock held (or before the log is shared).
+    private void deleteDrainedSegments() throws IOException {
+        while (segments.size() > 1 && segments.get(0).lastSeq() <= drainedSeq
+                && segments.get(0).count == recordsPerSegment)
+            retire(segments.remove(0));
+        deleteRetired();
+    }
+
+    // Closes a segment that is no longer needed and deletes its file. A MappedByteBuffer is only
+    // unmapped when it is collected, and Windows refuses to delete a file while a mapping of it is
+    // alive, so a failed delete is left in `undeleted` and retried on later calls instead of failing
+    // the compaction or append that freed the segment. Called with lock held (or before the log is shared).
+    private void retire(Segment seg) throws IOException {
+        close(seg);
+        undeleted.add(seg.path);
+    }
+
+    private void deleteRetired() {
+        for (Iterator<Path> it = undeleted.iterator(); it.hasNext();) {
+            try {
+                Files.deleteIfExists(it.next());
+                it.remove();
+            } catch (IOException e) {
+                // still mapped; retried on the next call
+            }
+        }
+    }
+
+    private Segment map(Path file, long firstSeq) throws IOException {
+        boolean create = firstSeq >= 0;
+        FileChannel ch = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = HEADER_BYTES + (long) recordsPerSegment * RECORD_BYTES;
+        MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        m.order(ByteOrder.LITTLE_ENDIAN);
+        if (create) {
+            m.putLong(0, MAGIC);
+            m.putInt(8, RECORD_BYTES);
+            m.putInt(12, recordsPerSegment);
+            m.putLong(16, firstSeq);
+        } else if (m.getLong(0) != MAGIC || m.getInt(8) != RECORD_BYTES || m.getInt(12) != recordsPerSegment) {
+            ch.close();
+            throw new IOException("Not a transaction log segment (or different segment size): " + file);
+        } else {
+            firstSeq = m.getLong(16);
+        }
+        return new Segment(file, ch, m, firstSeq);
+    }
+
+    private static void close(Segment seg) throws IOException {
+        seg.channel.close(); // the mapping is released when the buffer is collected
+    }
+
+    private long zeroTail(Segment seg, int from) {
+        long zeroed = 0;
+        for (int n = from; n < recordsPerSegment; n++) {
+            int at = slot(n);
+            if (seg.map.getLong(at) == 0 && seg.map.getInt(at + 44) == 0)
+                break;
+            for (int i = 0; i < RECORD_BYTES; i += 8)
+                seg.map.putLong(at + i, 0);
+            zeroed += RECORD_BYTES;
+        }
+        return zeroed;
+    }
+
+    private static int slot(int n) {
+        return HEADER_BYTES + n * RECORD_BYTES;
+    }
+
+    private static boolean valid(java.nio.ByteBuffer b, int at, long expectedSeq) {
+        long seq = b.getLong(at);
+        if (seq != expectedSeq)
+            return false;
+        return b.getInt(at + 44) == check(seq, b.getInt(at + 8), b.getInt(at + 12), b.getLong(at + 16),
+                b.getLong(at + 24), b.getInt(at + 32), b.getInt(at + 36));
+    }
+
+    private static int check(long seq, int customer, int vendor, long amountBits, long millis, int location,
+            int status) {
+        long h = mix(seq);
+        h = mix(h ^ (((long) customer << 32) | (vendor & 0xFFFFFFFFL)));
+        h = mix(h ^ amountBits);
+        h = mix(h ^ millis);
+        h = mix(h ^ (((long) location << 32) | (status & 0xFFFFFFFFL)));
+        int c = (int) (h ^ (h >>> 32));
+        return c == 0 ? 1 : c; // zero marks an unwritten slot
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    private int intern(String s, boolean persist) throws IOException {
+        if (s == null)
+            return 0;
+        Integer id = stringIds.get(s);
+        if (id != null)
+            return id;
+        synchronized (strings) {
+            id = stringIds.get(s);
+            if (id != null)
+                return id;
+            String clean = s.replace('\n', ' ').replace('\r', ' ');
+            if (persist) {
+                // Persisted before any record can reference it.
+                dictionary.write(java.nio.ByteBuffer.wrap((clean + "\n").getBytes(StandardCharsets.UTF_8)));
+                dictionary.force(false);
+            }
+            strings.add(clean);
+            id = strings.size();
+            stringIds.put(s, id);
+            return id;
+        }
+    }
+
+    private String string(int id) {
+        if (id == 0)
+            return null;
+        synchronized (strings) {
+            return strings.get(id - 1);
+        }
+    }
+
+    private long readCheckpoint() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = pool.acquireWrite()) {
+            try (Statement stmt = pc.raw().createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS txlog_checkpoint (name TEXT PRIMARY KEY, seq INTEGER NOT NULL)");
+            }
+            PreparedStatement ps = pc.prepare("SELECT seq FROM txlog_checkpoint WHERE name = ?");
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private void writeCheckpoint(ConnectionPool.PooledConnection writer, long seq) throws SQLException {
+        PreparedStatement ps = writer.prepare("INSERT INTO txlog_checkpoint (name, seq) VALUES (?, ?) "
+                + "ON CONFLICT(name) DO UPDATE SET seq = excluded.seq");
+        ps.setString(1, name);
+        ps.setLong(2, seq);
+        ps.executeUpdate();
+    }
+}
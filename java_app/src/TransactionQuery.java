@@ -0,0 +1,213 @@
+package src;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Filtered, keyset-paginated query over risk_results (joined to transactions/vendors).
+// Pages are ordered by (timestamp DESC, transaction_id DESC) or (risk_score DESC, transaction_id DESC);
+// "after" is an opaque cursor holding the sort key of the last row of the previous page,
+// so every page is an index seek rather than an OFFSET scan. Rows with a NULL sort key come last,
+// as SQLite sorts NULL below every value.
+public class TransactionQuery {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    public enum Sort {
+        TIME, SCORE
+    }
+
+    public String level;
+    public Boolean reviewed;
+    public String location;
+    public String category;
+    public String from; // inclusive, compared against risk_results.timestamp
+    public String to; // exclusive
+    public Sort sort = Sort.TIME;
+    public int limit = DEFAULT_LIMIT;
+
+    // Decoded cursor; afterKey is null both without a cursor and after a row whose sort key is NULL.
+    public String afterKey;
+    public boolean afterNullKey;
+    public long afterId;
+
+    public static TransactionQuery fromQueryString(String rawQuery) {
+        TransactionQuery q = new TransactionQuery();
+        Map<String, String> params = parseParams(rawQuery);
+
+        q.level = emptyToNull(params.get("level"));
+        if (q.level != null)
+            q.level = q.level.toUpperCase();
+        String reviewed = emptyToNull(params.get("reviewed"));
+        if (reviewed != null) {
+            if (!reviewed.equalsIgnoreCase("true") && !reviewed.equalsIgnoreCase("false"))
+                throw new IllegalArgumentException("reviewed must be 'true' or 'false'");
+            q.reviewed = reviewed.equalsIgnoreCase("true");
+        }
+        q.location = emptyToNull(params.get("location"));
+        q.category = emptyToNull(params.get("category"));
+        q.from = emptyToNull(params.get("from"));
+        q.to = emptyToNull(params.get("to"));
+
+        String sort = emptyToNull(params.get("sort"));
+        if (sort != null) {
+            try {
+                q.sort = Sort.valueOf(sort.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("sort must be 'time' or 'score'");
+            }
+        }
+
+        String limit = emptyToNull(params.get("limit"));
+        if (limit != null) {
+            try {
+                q.limit = Integer.parseInt(limit);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be a number");
+            }
+            if (q.limit < 1 || q.limit > MAX_LIMIT)
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        String after = emptyToNull(params.get("after"));
+        if (after != null)
+            q.decodeCursor(after);
+        return q;
+    }
+
+    // Values are written as "=value" and a NULL sort key as an empty field, so the two never collide.
+    public String cursorFor(String sortKey, long id) {
+        String raw = sort.name() + "|" + (sortKey == null ? "" : "=" + sortKey) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int a = raw.indexOf('|');
+            int b = raw.lastIndexOf('|');
+            if (a < 0 || b <= a)
+                throw new IllegalArgumentException("malformed");
+            if (!raw.substring(0, a).equals(sort.name()))
+                throw new IllegalArgumentException("cursor was issued for a different sort");
+            String key = raw.substring(a + 1, b);
+            if (key.isEmpty())
+                afterNullKey = true;
+            else if (key.startsWith("="))
+                afterKey = key.substring(1);
+            else
+                throw new IllegalArgumentException("malformed");
+            afterId = Long.parseLong(raw.substring(b + 1));
+            if (sort == Sort.SCORE && afterKey != null)
+                Double.parseDouble(afterKey);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + e.getMessage());
+        }
+    }
+
+    // Fetches limit + 1 rows so the caller can tell whether another page exists.
+    public String toSql() {
+        String key = sort == Sort.SCORE ? "r.risk_score" : "r.timestamp";
+        String order = " ORDER BY " + key + " DESC, r.transaction_id DESC LIMIT ?";
+        if (afterNullKey)
+            return filtered() + " AND " + key + " IS NULL AND r.transaction_id < ?" + order;
+        if (afterKey == null)
+            return filtered() + order;
+        // After a valued cursor come the remaining valued rows, then every NULL-key row. One WHERE with
+        // "OR key IS NULL" makes SQLite scan the index from the top; two limited seeks merged keep
+        // deep pages cheap.
+        String column = sort == Sort.SCORE ? "risk_score" : "r_timestamp";
+        return "SELECT * FROM (" + filtered() + " AND (" + key + ", r.transaction_id) < (?, ?)" + order + ")"
+                + " UNION ALL SELECT * FROM (" + filtered() + " AND " + key + " IS NULL" + order + ")"
+                + " ORDER BY " + column + " DESC, transaction_id DESC LIMIT ?";
+    }
+
+    private String filtered() {
+        StringBuilder sql = new StringBuilder(
+                "SELECT r.transaction_id, t.amount, r.risk_score, r.risk_level, r.reason, r.is_reviewed, t.timestamp, t.location, v.category, r.timestamp AS r_timestamp "
+                        + "FROM risk_results r "
+                        + "JOIN transactions t ON r.transaction_id = t.transaction_id "
+                        + "LEFT JOIN vendors v ON t.vendor_id = v.vendor_id "
+                        + "WHERE 1=1");
+        if (level != null)
+            sql.append(" AND r.risk_level = ?");
+        if (reviewed != null)
+            sql.append(" AND r.is_reviewed = ?");
+        if (location != null)
+            sql.append(" AND t.location = ?");
+        if (category != null)
+            sql.append(" AND v.category = ?");
+        if (from != null)
+            sql.append(" AND r.timestamp >= ?");
+        if (to != null)
+            sql.append(" AND r.timestamp < ?");
+        return sql.toString();
+    }
+
+    public void bind(PreparedStatement ps) throws SQLException {
+        int i = bindFilters(ps, 1);
+        if (afterNullKey) {
+            ps.setLong(i++, afterId);
+        } else if (afterKey != null) {
+            if (sort == Sort.SCORE)
+                ps.setDouble(i++, Double.parseDouble(afterKey));
+            else
+                ps.setString(i++, afterKey);
+            ps.setLong(i++, afterId);
+            ps.setInt(i++, limit + 1);
+            i = bindFilters(ps, i);
+            ps.setInt(i++, limit + 1);
+        }
+        ps.setInt(i, limit + 1);
+    }
+
+    private int bindFilters(PreparedStatement ps, int i) throws SQLException {
+        if (level != null)
+            ps.setString(i++, level);
+        if (reviewed != null)
+            ps.setInt(i++, reviewed ? 1 : 0);
+        if (location != null)
+            ps.setString(i++, location);
+        if (category != null)
+            ps.setString(i++, category);
+        if (from != null)
+            ps.setString(i++, from);
+        if (to != null)
+            ps.setString(i++, to);
+        return i;
+    }
+
+    static Map<String, String> parseParams(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty())
+            return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq);
+            String v = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    // Index DDL backing the query shapes above (also in database/schema.sql).
+    public static List<String> indexDdl() {
+        List<String> ddl = new ArrayList<>();
+        ddl.add("CREATE INDEX IF NOT EXISTS idx_risk_results_timestamp ON risk_results(timestamp, transaction_id)");
+        ddl.add("CREATE INDEX IF NOT EXISTS idx_risk_results_level_timestamp ON risk_results(risk_level, timestamp, transaction_id)");
+        ddl.add("CREATE INDEX IF NOT EXISTS idx_risk_results_level_score ON risk_results(risk_level, risk_score, transaction_id)");
+        ddl.add("CREATE INDEX IF NOT EXISTS idx_risk_results_score ON risk_results(risk_score, transaction_id)");
+        ddl.add("CREATE INDEX IF NOT EXISTS idx_transactions_customer ON transactions(customer_id)");
+        return ddl;
+    }
+}
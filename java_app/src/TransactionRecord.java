@@ -0,0 +1,58 @@
+package src;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// One transaction plus its (optional) risk verdict, as written by the ingest path.
+public class TransactionRecord {
+    public long transactionId; // assigned on insert
+    public final int customerId;
+    public final int vendorId;
+    public final double amount;
+    public final String timestamp;
+    public final String location;
+    public final String status;
+
+    // Risk result; riskLevel == null means no risk_results row is written.
+    public double riskScore;
+    public String riskLevel;
+    public String reason;
+    public double fraudProbability;
+
+    public TransactionRecord(int customerId, int vendorId, double amount, String timestamp, String location,
+            String status) {
+        this.customerId = customerId;
+        this.vendorId = vendorId;
+        this.amount = amount;
+        this.timestamp = timestamp;
+        this.location = location;
+        this.status = status;
+    }
+
+    public TransactionRecord withRisk(double score, String level, String reason, double fraudProbability) {
+        this.riskScore = score;
+        this.riskLevel = level;
+        this.reason = reason;
+        this.fraudProbability = fraudProbability;
+        return this;
+    }
+
+    public boolean hasRisk() {
+        return riskLevel != null;
+    }
+
+    // Same shape as a row of /api/transactions.
+    public Map<String, Object> toRow(String category) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", (int) transactionId);
+        map.put("amount", amount);
+        map.put("score", riskScore);
+        map.put("level", riskLevel);
+        map.put("reason", reason);
+        map.put("reviewed", false);
+        map.put("timestamp", timestamp);
+        map.put("location", location);
+        map.put("category", category);
+        return map;
+    }
+}
@@ -0,0 +1,276 @@
+package src;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Lazy view of every risk_results row, highest score first, for DashboardUI. Only the row count is
+// loaded up front; the JTable asks for visible rows, and missing pages are fetched PAGE_SIZE rows at a
+// time on a background loader thread, kept in an LRU page cache and announced with one rowsUpdated
+// event per page. All fields are only touched on the event thread: the loader gets its inputs copied
+// and hands results back with invokeLater, so nothing here needs locking. (SwingWorker.done() is not
+// used for this because Swing batches it on a 30 Hz timer, adding up to 33 ms to every page.)
+public class TransactionTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    static final int PAGE_SIZE = 500;
+    private static final int MAX_CACHED_PAGES = 200; // 100k rows
+    // Requests are served newest first; older ones are for rows the user has already scrolled past.
+    private static final int MAX_PENDING_PAGES = 8;
+    private static final String[] COLUMNS = { "ID", "Transaction Amount", "Risk Score", "Risk Level", "Reason",
+            "Status" };
+    private static final String LOADING = "Loading...";
+
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    // Keyset cursor (score, id) of the row just before page p, known once page p - 1 was loaded.
+    // Scrolling page by page then seeks straight to the next page instead of counting an offset.
+    private final Map<Integer, Object[]> startKeys = new HashMap<>();
+    private final Set<Integer> pending = new LinkedHashSet<>();
+    private final Set<Integer> failed = new HashSet<>();
+    private int rowCount;
+    private int generation;
+    private int loadingPage = -1;
+    // Single thread: page loads run one at a time, newest request first, and leave the rest of the
+    // read pool to the API server.
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "dashboard-page-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private Consumer<String> statusListener = s -> {
+    };
+
+    // Metrics
+    private long pagesLoaded;
+    private long offsetSeeks;
+    private double lastPageMs;
+
+    public void setStatusListener(Consumer<String> listener) {
+        this.statusListener = listener;
+    }
+
+    // Drops all cached pages and recounts in the background; visible rows reload as they are repainted.
+    public void refresh() {
+        int gen = ++generation;
+        pages.clear();
+        startKeys.clear();
+        pending.clear();
+        failed.clear();
+        statusListener.accept("Counting transactions...");
+        loader.execute(() -> {
+            try {
+                long count = DatabaseManager.countRiskResults();
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generation)
+                        return;
+                    rowCount = (int) Math.min(count, Integer.MAX_VALUE);
+                    fireTableDataChanged();
+                    reportStatus();
+                });
+            } catch (SQLException | RuntimeException e) {
+                SwingUtilities.invokeLater(() -> statusListener.accept("Error loading data: " + e.getMessage()));
+            }
+        });
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / PAGE_SIZE;
+        Object[][] rows = pages.get(page);
+        if (rows == null) {
+            request(page);
+            return column == 4 && !failed.contains(page) ? LOADING : null;
+        }
+        int i = row % PAGE_SIZE;
+        return i < rows.length ? rows[i][column] : null; // rows deleted since the count
+    }
+
+    private void request(int page) {
+        if (page == loadingPage || failed.contains(page))
+            return;
+        pending.remove(page); // re-adding moves it to the newest position
+        pending.add(page);
+        if (pending.size() > MAX_PENDING_PAGES)
+            pending.remove(pending.iterator().next());
+        loadNext();
+    }
+
+    private void loadNext() {
+        if (loadingPage >= 0 || pending.isEmpty())
+            return;
+        Integer page = null;
+        for (Integer p : pending)
+            page = p; // newest
+        pending.remove(page);
+        loadingPage = page;
+        int p = page;
+        int gen = generation;
+        Object[] startKey = startKeys.get(p);
+        long started = System.nanoTime();
+        loader.execute(() -> {
+            Page loaded = null;
+            String error = null;
+            try {
+                loaded = fetch(p, startKey);
+            } catch (SQLException | RuntimeException e) {
+                error = e.getMessage();
+            }
+            Page result = loaded;
+            String message = error;
+            SwingUtilities.invokeLater(() -> pageLoaded(p, gen, result, message, started));
+        });
+    }
+
+    private static final class Page {
+        Object[][] rows;
+        Object[] nextKey; // start key of the following page, null on the last page
+        boolean seeked;
+    }
+
+    // Runs on the loader thread; also formats the cells so the event thread only stores them.
+    private static Page fetch(int page, Object[] startKey) throws SQLException {
+        Page out = new Page();
+        TransactionQuery q = new TransactionQuery();
+        q.sort = TransactionQuery.Sort.SCORE;
+        q.limit = PAGE_SIZE;
+        List<Object[]> rows = Collections.emptyList();
+        if (startKey != null) {
+            q.afterKey = Double.toString((Double) startKey[0]);
+            q.afterId = (Long) startKey[1];
+            rows = DatabaseManager.queryTransactionRows(q);
+        } else {
+            out.seeked = page > 0;
+            if (DatabaseManager.seekScoreOffset(q, (long) page * PAGE_SIZE))
+                rows = DatabaseManager.queryTransactionRows(q);
+        }
+        int n = Math.min(rows.size(), PAGE_SIZE);
+        out.rows = new Object[n][];
+        for (int i = 0; i < n; i++)
+            out.rows[i] = displayRow(rows.get(i));
+        if (n == PAGE_SIZE) {
+            Object[] last = rows.get(n - 1);
+            out.nextKey = new Object[] { last[2], ((Integer) last[0]).longValue() };
+        }
+        return out;
+    }
+
+    private void pageLoaded(int page, int gen, Page loaded, String error, long started) {
+        loadingPage = -1;
+        if (gen == generation) {
+            if (loaded == null) {
+                failed.add(page); // retried on the next refresh rather than on every repaint
+                statusListener.accept("Error loading rows " + page * PAGE_SIZE + "+: " + error);
+            } else {
+                pages.put(page, loaded.rows);
+                if (loaded.nextKey != null)
+                    startKeys.put(page + 1, loaded.nextKey);
+                pagesLoaded++;
+                if (loaded.seeked)
+                    offsetSeeks++;
+                lastPageMs = (System.nanoTime() - started) / 1e6;
+                int first = page * PAGE_SIZE;
+                int last = Math.min(first + loaded.rows.length, rowCount) - 1;
+                if (last >= first)
+                    fireTableRowsUpdated(first, last);
+                reportStatus();
+            }
+        }
+        loadNext();
+    }
+
+    private static Object[] displayRow(Object[] r) {
+        return new Object[] { r[0], String.format("$%.2f", (Double) r[1]), r[2], r[3], r[4],
+                (Boolean) r[5] ? "Reviewed" : "New" };
+    }
+
+    private void reportStatus() {
+        statusListener.accept(String.format("%,d transactions | %d pages cached | last page %.1f ms", rowCount,
+                pages.size(), lastPageMs));
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("rows", rowCount);
+        out.put("cachedPages", pages.size());
+        out.put("pagesLoaded", pagesLoaded);
+        out.put("offsetSeeks", offsetSeeks);
+        out.put("lastPageMs", lastPageMs);
+        return out;
+    }
+
+    // Writes every row as CSV in the table's order, one keyset page at a time, so memory use does not
+    // grow with the table. progress gets the running row count after each page. Call off the event thread.
+    public static long writeCsv(Writer out, LongConsumer progress) throws SQLException, IOException {
+        out.write("id,amount,risk_score,risk_level,reason,reviewed,timestamp,location,category\n");
+        TransactionQuery q = new TransactionQuery();
+        q.sort = TransactionQuery.Sort.SCORE;
+        q.limit = TransactionQuery.MAX_LIMIT;
+        long written = 0;
+        while (true) {
+            List<Object[]> rows = DatabaseManager.queryTransactionRows(q);
+            int n = Math.min(rows.size(), q.limit);
+            StringBuilder sb = new StringBuilder(n * 96);
+            for (int i = 0; i < n; i++) {
+                Object[] r = rows.get(i);
+                for (int c = 0; c < r.length; c++) {
+                    if (c > 0)
+                        sb.append(',');
+                    csvField(sb, r[c]);
+                }
+                sb.append('\n');
+            }
+            out.write(sb.toString());
+            written += n;
+            progress.accept(written);
+            if (rows.size() <= q.limit)
+                return written;
+            Object[] last = rows.get(n - 1);
+            q.afterKey = Double.toString((Double) last[2]);
+            q.afterId = (Integer) last[0];
+        }
+    }
+
+    private static void csvField(StringBuilder sb, Object v) {
+        if (v == null)
+            return;
+        String s = v instanceof Boolean ? ((Boolean) v ? "1" : "0") : v.toString();
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            sb.append(s);
+            return;
+        }
+        sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,166 @@
+package src;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Burst rules next to the per-transaction rules in RiskScoringEngine: more than maxCount transactions
+// or more than maxAmount from one customer, or more than maxLocationCount transactions from one
+// location, within the sliding window (event time, see VelocityWindow). Breaches are merged into the
+// record's score and reason, so the ingest path writes them to risk_results like any other finding.
+// The windows are best-effort: events of an ingest chunk that rolls back stay counted.
+public class VelocityEngine {
+    public static final int COUNT_SCORE = 40;
+    public static final int AMOUNT_SCORE = 40;
+    public static final int LOCATION_SCORE = 20;
+    static final String VELOCITY_REASON = "Velocity: ";
+    static final String LOCATION_REASON = "Location burst: ";
+
+    private static final Metrics.Timer APPLY_TIMER = Metrics.timer("velocity_seconds",
+            "Sliding-window update and checks for one event");
+
+    private final VelocityWindow customers;
+    private final VelocityWindow locations;
+    // Location -> window key. Codes are never reused, so when the map is cleared at maxLocations the
+    // old keys simply go idle in the window instead of colliding with new locations.
+    private final Map<String, Integer> locationCodes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextLocationCode = new AtomicInteger();
+    private final int maxLocations;
+    private final int maxCount;
+    private final long maxCents;
+    private final int maxLocationCount;
+    private final String windowText;
+
+    // Metrics
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder countBreaches = new LongAdder();
+    private final LongAdder amountBreaches = new LongAdder();
+    private final LongAdder locationBreaches = new LongAdder();
+
+    public VelocityEngine(long windowMillis, int maxCount, double maxAmount, int maxLocationCount, int maxKeys) {
+        if (maxCount <= 0 || maxAmount <= 0 || maxLocationCount <= 0)
+            throw new IllegalArgumentException("velocity limits must be positive");
+        this.customers = new VelocityWindow(windowMillis, maxKeys);
+        this.maxLocations = Math.max(VelocityWindow.STRIPES, maxKeys / 16);
+        this.locations = new VelocityWindow(windowMillis, maxLocations);
+        this.maxCount = maxCount;
+        this.maxCents = Math.round(maxAmount * 100);
+        this.maxLocationCount = maxLocationCount;
+        long window = customers.windowMillis();
+        this.windowText = window % 60_000 == 0 ? window / 60_000 + " min" : window / 1000 + " s";
+    }
+
+    public VelocityWindow customerWindow() {
+        return customers;
+    }
+
+    public VelocityWindow locationWindow() {
+        return locations;
+    }
+
+    // Counts the transaction and adds COUNT_SCORE / AMOUNT_SCORE / LOCATION_SCORE per breached limit,
+    // capped at 100, with one reason each; the level is recomputed from the new score.
+    public TransactionRecord apply(TransactionRecord r) {
+        long start = System.nanoTime();
+        long millis;
+        try {
+            millis = Timestamps.epochMillis(r.timestamp);
+        } catch (RuntimeException e) {
+            millis = Timestamps.NONE; // unparseable: not counted
+        }
+        long[] totals = new long[2];
+        int added = 0;
+        StringBuilder reasons = null; // only built on a breach
+        if (customers.add(r.customerId, millis, Math.round(r.amount * 100), totals)) {
+            if (totals[0] > maxCount) {
+                added += COUNT_SCORE;
+                reasons = new StringBuilder();
+                reasons.append(VELOCITY_REASON).append(totals[0]).append(" transactions in ").append(windowText)
+                        .append(" (limit ").append(maxCount).append(")");
+                countBreaches.increment();
+            }
+            if (totals[1] > maxCents) {
+                added += AMOUNT_SCORE;
+                reasons = reasons == null ? new StringBuilder() : reasons.append("; ");
+                reasons.append(VELOCITY_REASON).append('$').append(dollars(totals[1])).append(" in ").append(windowText)
+                        .append(" (limit $").append(dollars(maxCents)).append(")");
+                amountBreaches.increment();
+            }
+        }
+        if (r.location != null && locations.add(locationCode(r.location), millis, 0, totals)
+                && totals[0] > maxLocationCount) {
+            added += LOCATION_SCORE;
+            reasons = reasons == null ? new StringBuilder() : reasons.append("; ");
+            reasons.append(LOCATION_REASON).append(totals[0]).append(" transactions from ").append(r.location)
+                    .append(" in ").append(windowText);
+            locationBreaches.increment();
+        }
+        if (added > 0)
+            merge(r, added, reasons);
+        checked.increment();
+        APPLY_TIMER.recordSince(start);
+        return r;
+    }
+
+    private int locationCode(String location) {
+        Integer code = locationCodes.get(location);
+        if (code != null)
+            return code;
+        if (locationCodes.size() >= maxLocations)
+            locationCodes.clear();
+        return locationCodes.computeIfAbsent(location, l -> nextLocationCode.incrementAndGet());
+    }
+
+    private static String dollars(long cents) {
+        return String.format(Locale.ROOT, "%.2f", cents / 100.0); // stored text, not display
+    }
+
+    // The velocity parts of a stored reason, or null if it has none.
+    static String findings(String reason) {
+        if (reason == null || (!reason.contains(VELOCITY_REASON) && !reason.contains(LOCATION_REASON)))
+            return null;
+        StringBuilder found = null;
+        for (String part : reason.split("; ")) {
+            if (part.startsWith(VELOCITY_REASON) || part.startsWith(LOCATION_REASON))
+                found = found == null ? new StringBuilder(part) : found.append("; ").append(part);
+        }
+        return found == null ? null : found.toString();
+    }
+
+    // Re-applies findings (see findings()) to a freshly rule-scored record with their original scores.
+    // Rescorer uses this because a burst depends on arrival order, which a re-score cannot replay.
+    static TransactionRecord carryOver(TransactionRecord r, String findings) {
+        if (findings == null)
+            return r;
+        int added = 0;
+        for (String part : findings.split("; ")) {
+            if (part.startsWith(LOCATION_REASON))
+                added += LOCATION_SCORE;
+            else
+                added += part.startsWith(VELOCITY_REASON + "$") ? AMOUNT_SCORE : COUNT_SCORE;
+        }
+        return merge(r, added, findings);
+    }
+
+    private static TransactionRecord merge(TransactionRecord r, int added, CharSequence reasons) {
+        double score = Math.min(r.riskScore + added, 100);
+        String reason = r.riskScore > 0 ? r.reason + "; " + reasons : reasons.toString();
+        return r.withRisk(score, RiskScoringEngine.levelFor(score), reason, r.fraudProbability);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("window", windowText);
+        m.put("checked", checked.sum());
+        m.put("countBreaches", countBreaches.sum());
+        m.put("amountBreaches", amountBreaches.sum());
+        m.put("locationBreaches", locationBreaches.sum());
+        m.put("customers", customers.getMetrics());
+        m.put("locations", locations.getMetrics());
+        m.put("locationCodes", locationCodes.size());
+        return m;
+    }
+}
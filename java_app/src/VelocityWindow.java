@@ -0,0 +1,264 @@
+package src;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Sliding-window count and amount per int key (customer id, location code), in event time.
+// Each key owns a ring of BUCKETS time buckets covering the window, so "last 5 minutes" is exact to
+// one bucket (30 s by default). Keys live in STRIPES independently locked open-addressing tables of
+// primitive arrays (like CustomerProfileMap), so concurrent ingest threads only contend when their
+// keys share a stripe, and a slot costs 88 bytes with no per-key objects.
+// Memory stays bounded: keys idle for a whole window are dropped whenever a stripe rehashes, and a
+// stripe never holds more than maxKeys / STRIPES keys (the least recently active go first), so the
+// tables never exceed ~180 bytes per allowed key. Bucket amounts are int cents that saturate at
+// ~$21M, far above any amount limit worth checking.
+public class VelocityWindow {
+    public static final int BUCKETS = 10;
+    static final int STRIPES = 64;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final long bucketMillis;
+    private final int maxKeysPerStripe;
+    private final int maxCapacity; // slots per stripe at maxKeysPerStripe
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // Metrics
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder lateEvents = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAdder activeEvictions = new LongAdder();
+
+    public VelocityWindow(long windowMillis, int maxKeys) {
+        if (windowMillis < BUCKETS || maxKeys < STRIPES)
+            throw new IllegalArgumentException("window must be at least " + BUCKETS + " ms and maxKeys at least " + STRIPES);
+        this.bucketMillis = windowMillis / BUCKETS;
+        this.maxKeysPerStripe = maxKeys / STRIPES;
+        this.maxCapacity = capacityFor(maxKeysPerStripe);
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe(16);
+    }
+
+    public long windowMillis() {
+        return bucketMillis * BUCKETS;
+    }
+
+    private static int capacityFor(int keys) {
+        return Integer.highestOneBit(Math.max(16, (int) (keys / LOAD_FACTOR)) - 1) << 1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Adds one event and writes the key's window totals, including this event, to out[0] (count) and
+    // out[1] (amount in cents). Returns false, counting nothing, for events without a usable time or
+    // older than the key's window.
+    public boolean add(int key, long epochMillis, long cents, long[] out) {
+        if (epochMillis == Timestamps.NONE || epochMillis < bucketMillis)
+            return false;
+        int bucket = (int) Math.min(epochMillis / bucketMillis, Integer.MAX_VALUE);
+        int h = hash(key);
+        Stripe s = stripes[h >>> 26]; // top 6 bits pick the stripe, the low bits the slot
+        boolean counted;
+        synchronized (s) {
+            counted = s.add(key, h, bucket, cents, out);
+        }
+        if (counted)
+            updates.increment();
+        else
+            lateEvents.increment();
+        return counted;
+    }
+
+    // Totals of the window ending at the key's newest event, without recording anything; zeros when
+    // the key is not tracked.
+    public void totals(int key, long[] out) {
+        int h = hash(key);
+        Stripe s = stripes[h >>> 26];
+        synchronized (s) {
+            s.totals(key, h, out);
+        }
+    }
+
+    // Drops keys idle for a whole window from every stripe; rehashing does this on its own, this is
+    // for callers that want memory back after a burst of one-off keys.
+    public void evictIdle() {
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                s.rebuild(false);
+            }
+        }
+    }
+
+    public long trackedKeys() {
+        long n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.size;
+            }
+        }
+        return n;
+    }
+
+    public long bytes() {
+        long n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += (long) s.capacity() * (4 + 4 + BUCKETS * (4 + 4));
+            }
+        }
+        return n;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("keys", trackedKeys());
+        m.put("maxKeys", (long) maxKeysPerStripe * STRIPES);
+        m.put("bytes", bytes());
+        m.put("updates", updates.sum());
+        m.put("lateEvents", lateEvents.sum());
+        m.put("idleEvictions", idleEvictions.sum());
+        m.put("activeEvictions", activeEvictions.sum());
+        return m;
+    }
+
+    // Two interleaved int arrays, so one update touches the (key, head) pair and one 80-byte ring:
+    //   slots[2i] = key, slots[2i + 1] = newest bucket number seen for it (0 marks an empty slot)
+    //   ring[2(i * BUCKETS + b)] = count, ring[2(i * BUCKETS + b) + 1] = cents, b = bucket % BUCKETS
+    private final class Stripe {
+        private int[] slots;
+        private int[] ring;
+        private int size;
+        private int mask;
+        private int newest; // newest bucket seen by the stripe, the reference for idleness
+
+        Stripe(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            slots = new int[capacity * 2];
+            ring = new int[capacity * BUCKETS * 2];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        boolean add(int key, int h, int bucket, long amountCents, long[] out) {
+            int i = h & mask;
+            while (slots[2 * i + 1] != 0 && slots[2 * i] != key)
+                i = (i + 1) & mask;
+
+            if (bucket > newest)
+                newest = bucket;
+            if (slots[2 * i + 1] == 0) {
+                if (size + 1 > (mask + 1) * LOAD_FACTOR || size >= maxKeysPerStripe) {
+                    rebuild(true);
+                    return add(key, h, bucket, amountCents, out);
+                }
+                slots[2 * i] = key;
+                slots[2 * i + 1] = bucket;
+                size++;
+            }
+
+            int head = slots[2 * i + 1];
+            int base = 2 * i * BUCKETS;
+            if (bucket > head) {
+                // Clear the buckets the ring moves over; they hold events a full window older.
+                for (int b = head + 1, end = Math.min(bucket, head + BUCKETS); b <= end; b++) {
+                    int j = base + 2 * (b % BUCKETS);
+                    ring[j] = 0;
+                    ring[j + 1] = 0;
+                }
+                slots[2 * i + 1] = bucket;
+            } else if (bucket <= head - BUCKETS) {
+                return false; // older than the window
+            }
+            int j = base + 2 * (bucket % BUCKETS);
+            ring[j]++;
+            ring[j + 1] = (int) Math.min(Integer.MAX_VALUE, ring[j + 1] + amountCents);
+            sum(base, out);
+            return true;
+        }
+
+        void totals(int key, int h, long[] out) {
+            int i = h & mask;
+            while (slots[2 * i + 1] != 0) {
+                if (slots[2 * i] == key) {
+                    sum(2 * i * BUCKETS, out);
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            out[0] = 0;
+            out[1] = 0;
+        }
+
+        private void sum(int base, long[] out) {
+            long n = 0, c = 0;
+            for (int j = base; j < base + 2 * BUCKETS; j += 2) {
+                n += ring[j];
+                c += ring[j + 1];
+            }
+            out[0] = n;
+            out[1] = c;
+        }
+
+        // Copies the keys still inside the window into fresh arrays sized for twice the survivors, so
+        // the next rebuild is at least as many new keys away as there are live ones. At the cap the
+        // least recently active keys are dropped as well.
+        void rebuild(boolean grow) {
+            int idleBefore = newest - BUCKETS; // heads at or below this have an all-expired ring
+            int[] byAge = new int[BUCKETS];
+            int live = 0;
+            for (int j = 1; j < slots.length; j += 2) {
+                if (slots[j] > idleBefore) {
+                    byAge[newest - slots[j]]++;
+                    live++;
+                }
+            }
+            idleEvictions.add(size - live);
+
+            // Near the cap (7/8, so a full stripe is not rebuilt for every new key): keep the most recently
+            // active keys, down to 3/4 of the cap. Keys younger than cutoffAge are all kept; of those
+            // exactly cutoffAge old, only the first `quota` found.
+            int cutoffAge = BUCKETS;
+            int quota = 0;
+            if (grow && live >= maxKeysPerStripe / 8 * 7) {
+                int target = maxKeysPerStripe * 3 / 4;
+                int kept = 0;
+                cutoffAge = 0;
+                while (cutoffAge < BUCKETS && kept + byAge[cutoffAge] <= target)
+                    kept += byAge[cutoffAge++];
+                quota = target - kept;
+                activeEvictions.add(live - target);
+                live = target;
+            }
+
+            int[] oldSlots = slots;
+            int[] oldRing = ring;
+            allocate(Math.min(capacityFor(2 * (live + 1)), maxCapacity));
+            size = 0;
+            for (int j = 0; j < oldSlots.length / 2; j++) {
+                int head = oldSlots[2 * j + 1];
+                if (head <= idleBefore)
+                    continue; // empty or idle
+                int age = newest - head;
+                if (age > cutoffAge || (age == cutoffAge && quota-- <= 0))
+                    continue; // evicted to stay under the cap
+                int key = oldSlots[2 * j];
+                int i = hash(key) & mask;
+                while (slots[2 * i + 1] != 0)
+                    i = (i + 1) & mask;
+                slots[2 * i] = key;
+                slots[2 * i + 1] = head;
+                System.arraycopy(oldRing, 2 * j * BUCKETS, ring, 2 * i * BUCKETS, 2 * BUCKETS);
+                size++;
+            }
+        }
+    }
+}
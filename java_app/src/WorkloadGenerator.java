@@ -0,0 +1,397 @@
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Parallel, seeded synthetic transaction workload.
+// The stream is cut into fixed-size blocks; block k is generated from its own SplittableRandom seeded
+// from (seed, k), so the output depends only on the config, not on the number of producer threads or
+// their scheduling. Producers generate (and, for file output, encode) blocks in parallel; a single
+// writer consumes them strictly in block order, paces them to the arrival rate, and either feeds the
+// bulk ingest path (which scores them) or appends CSV to a file.
+public class WorkloadGenerator {
+    public static final int BLOCK_SIZE = 4096;
+
+    private static final String[] LOCATIONS = { "New York", "London", "Singapore", "Tokyo", "Berlin", "Paris",
+            "Sydney", "Toronto", "Dubai", "Mumbai" };
+    private static final String[] CATEGORIES = { "Retail", "Services", "Digital", "Food", "Electronics", "Travel" };
+
+    public static class Config {
+        public long seed = 42;
+        public long count = 2000;
+        public int producers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        public int customers = 3;
+        public int vendors = 6;
+        public double zipf = 0.0; // exponent of the customer popularity skew; 0 = uniform
+        public double fraudRate = 0.02; // share of transactions with an injected anomaly
+        public double rate = 0.0; // arrivals per second; 0 = as fast as the writer goes
+        public LocalDateTime start; // first event time; null = now (pass it to reproduce timestamps)
+        public String file; // CSV output instead of the database
+        public int batchSize = 1000;
+        public int commitInterval = 20000;
+
+        // Parses key=value arguments, e.g. count=1000000 customers=50000 zipf=1.1 rate=20000 seed=7
+        public static Config parse(String[] args) {
+            Config c = new Config();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (eq < 0)
+                    throw new IllegalArgumentException("Expected key=value, got: " + arg);
+                String k = arg.substring(0, eq).replace("-", "");
+                String v = arg.substring(eq + 1);
+                switch (k) {
+                    case "seed": c.seed = Long.parseLong(v); break;
+                    case "count": c.count = Long.parseLong(v); break;
+                    case "producers": c.producers = Integer.parseInt(v); break;
+                    case "customers": c.customers = Integer.parseInt(v); break;
+                    case "vendors": c.vendors = Integer.parseInt(v); break;
+                    case "zipf": c.zipf = Double.parseDouble(v); break;
+                    case "fraudRate": c.fraudRate = Double.parseDouble(v); break;
+                    case "rate": c.rate = Double.parseDouble(v); break;
+                    case "start": c.start = LocalDateTime.parse(v.replace(' ', 'T')); break;
+                    case "file": c.file = v; break;
+                    case "batchSize": c.batchSize = Integer.parseInt(v); break;
+                    case "commitInterval": c.commitInterval = Integer.parseInt(v); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + k);
+                }
+            }
+            if (c.count < 0 || c.producers < 1 || c.customers < 1 || c.vendors < 1 || c.zipf < 0
+                    || c.fraudRate < 0 || c.fraudRate > 1 || c.rate < 0)
+                throw new IllegalArgumentException("Out-of-range option");
+            return c;
+        }
+    }
+
+    private static class Block {
+        final List<TransactionRecord> records;
+        final boolean[] injected;
+        final byte[] csv; // file output only
+
+        Block(List<TransactionRecord> records, boolean[] injected, byte[] csv) {
+            this.records = records;
+            this.injected = injected;
+            this.csv = csv;
+        }
+    }
+
+    private final Config config;
+    private final double[] zipfCdf; // null when uniform
+    private final LocalDateTime start;
+    private final long blocks;
+
+    private final AtomicLong nextBlock = new AtomicLong();
+    private final Semaphore inFlight;
+    private final ConcurrentHashMap<Long, CompletableFuture<Block>> ready = new ConcurrentHashMap<>();
+    private volatile boolean aborted;
+
+    // Metrics
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder producerNanos = new LongAdder();
+    private long written;
+    private long injectedCount;
+    private long flagged;
+    private long injectedFlagged;
+    private long writerWaitNanos;
+
+    public WorkloadGenerator(Config config) {
+        this.config = config;
+        this.zipfCdf = config.zipf > 0 ? zipfCdf(config.customers, config.zipf) : null;
+        this.start = config.start != null ? config.start
+                : config.rate > 0 ? LocalDateTime.now() : LocalDateTime.now().minusDays(7);
+        this.blocks = (config.count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        // Enough blocks in flight to keep producers busy while the writer fills a commit.
+        this.inFlight = new Semaphore(Math.max(config.producers * 4, 2 * config.commitInterval / BLOCK_SIZE + 2));
+    }
+
+    // Generates and writes the whole workload, then returns a summary.
+    public Map<String, Object> run() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < config.producers; i++) {
+            Thread t = new Thread(this::produce, "workload-producer-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+
+        long begin = System.nanoTime();
+        try {
+            if (config.file != null)
+                writeFile(begin);
+            else
+                writeDatabase(begin);
+        } finally {
+            aborted = true;
+            for (Thread t : threads)
+                t.interrupt();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("written", written);
+        m.put("seconds", Math.round(elapsed / 1e6) / 1e3);
+        m.put("txPerSec", Math.round(written / (elapsed / 1e9)));
+        m.put("producers", config.producers);
+        m.put("perProducerTxPerSec", producerNanos.sum() == 0 ? 0 : Math.round(generated.sum() / (producerNanos.sum() / 1e9)));
+        m.put("writerWaitMs", writerWaitNanos / 1_000_000);
+        m.put("injected", injectedCount);
+        if (config.file == null) {
+            m.put("flagged", flagged);
+            m.put("injectedFlagged", injectedFlagged);
+        }
+        return m;
+    }
+
+    private void produce() {
+        try {
+            while (!aborted) {
+                inFlight.acquire();
+                long k = nextBlock.getAndIncrement();
+                if (k >= blocks) {
+                    inFlight.release();
+                    return;
+                }
+                long t0 = System.nanoTime();
+                Block b;
+                try {
+                    b = generate(k);
+                } catch (RuntimeException e) {
+                    slot(k).completeExceptionally(e);
+                    return;
+                }
+                producerNanos.add(System.nanoTime() - t0);
+                generated.add(b.records.size());
+                slot(k).complete(b);
+            }
+        } catch (InterruptedException e) {
+            // run() is done
+        }
+    }
+
+    private CompletableFuture<Block> slot(long k) {
+        return ready.computeIfAbsent(k, x -> new CompletableFuture<>());
+    }
+
+    private Block take(long k) throws InterruptedException, ExecutionException {
+        long t0 = System.nanoTime();
+        Block b = slot(k).get();
+        writerWaitNanos += System.nanoTime() - t0;
+        ready.remove(k);
+        inFlight.release();
+        return b;
+    }
+
+    Block generate(long k) {
+        SplittableRandom rnd = new SplittableRandom(mix(config.seed, k));
+        long first = k * BLOCK_SIZE;
+        int n = (int) Math.min(BLOCK_SIZE, config.count - first);
+
+        // Poisson arrivals in event time: at the configured rate, or spread over the week after start.
+        double eventRate = config.rate > 0 ? config.rate : Math.max(config.count, 1) / (7 * 86400.0);
+        double eventSeconds = first / eventRate;
+
+        List<TransactionRecord> records = new ArrayList<>(n);
+        boolean[] injected = new boolean[n];
+        StringBuilder csv = config.file != null ? new StringBuilder(n * 64) : null;
+        for (int i = 0; i < n; i++) {
+            int customer = zipfCdf != null ? 1 + zipfRank(rnd.nextDouble()) : 1 + rnd.nextInt(config.customers);
+            int vendor = 1 + rnd.nextInt(config.vendors);
+
+            // Each customer has a stable typical spend; individual amounts vary around it.
+            double typical = 20 + (mix(config.seed, customer) >>> 1) % 480;
+            double amount = typical * Math.exp(0.35 * gaussian(rnd));
+            String location = LOCATIONS[(customer + (rnd.nextInt(10) == 0 ? rnd.nextInt(LOCATIONS.length) : 0))
+                    % LOCATIONS.length];
+
+            if (rnd.nextDouble() < config.fraudRate) {
+                injected[i] = true;
+                switch (rnd.nextInt(3)) {
+                    case 0: amount = typical * (5 + rnd.nextDouble() * 10); break; // spike
+                    case 1: amount = 100.0 * (11 + rnd.nextInt(90)); break; // large round amount
+                    default: location = RiskScoringEngine.SUSPICIOUS_LOCATION; break;
+                }
+            }
+            amount = Math.round(amount * 100) / 100.0;
+
+            eventSeconds += -Math.log(1 - rnd.nextDouble()) / eventRate;
+            String timestamp = Timestamps.format(start.plusNanos((long) (eventSeconds * 1e9)));
+
+            records.add(new TransactionRecord(customer, vendor, amount, timestamp, location, "completed"));
+            if (csv != null) {
+                csv.append(customer).append(',').append(vendor).append(',').append(amount).append(',')
+                        .append(timestamp).append(',').append(location).append(",completed,")
+                        .append(injected[i] ? 1 : 0).append('\n');
+            }
+        }
+        return new Block(records, injected, csv == null ? null : csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeDatabase(long begin) throws Exception {
+        DatabaseManager.initializeDatabaseIfEmpty();
+        ensureReferenceRows();
+        BulkIngestor ingestor = DatabaseManager.newIngestor(config.batchSize, config.commitInterval);
+
+        // Unthrottled, whole blocks are grouped up to the commit interval; throttled, slices of a
+        // block are paced so commits land at ~20/s instead of one per block.
+        int slice = config.rate > 0 ? (int) Math.max(1, Math.min(BLOCK_SIZE, config.rate / 20)) : 0;
+        List<Block> pending = new ArrayList<>();
+        int pendingRows = 0;
+        long lastReport = begin;
+        for (long k = 0; k < blocks; k++) {
+            Block b = take(k);
+            if (slice > 0) {
+                for (int from = 0; from < b.records.size(); from += slice) {
+                    pace(begin, k * BLOCK_SIZE + from);
+                    written += ingestor.ingest(b.records.subList(from, Math.min(b.records.size(), from + slice)).iterator());
+                }
+                tally(b);
+            } else {
+                pending.add(b);
+                pendingRows += b.records.size();
+                if (pendingRows >= config.commitInterval || k == blocks - 1) {
+                    List<TransactionRecord> rows = new ArrayList<>(pendingRows);
+                    for (Block p : pending)
+                        rows.addAll(p.records);
+                    written += ingestor.ingest(rows.iterator());
+                    for (Block p : pending)
+                        tally(p);
+                    pending.clear();
+                    pendingRows = 0;
+                }
+            }
+            lastReport = progress(begin, lastReport);
+        }
+    }
+
+    // Records are scored in place by the ingest path, so hits are read back after the write.
+    private void tally(Block b) {
+        for (int i = 0; i < b.records.size(); i++) {
+            boolean hit = b.records.get(i).riskScore > 0;
+            if (hit)
+                flagged++;
+            if (b.injected[i]) {
+                injectedCount++;
+                if (hit)
+                    injectedFlagged++;
+            }
+        }
+    }
+
+    private void writeFile(long begin) throws Exception {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(config.file), 1 << 20)) {
+            out.write("customer_id,vendor_id,amount,timestamp,location,status,injected\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            long lastReport = begin;
+            for (long k = 0; k < blocks; k++) {
+                Block b = take(k);
+                pace(begin, k * BLOCK_SIZE);
+                out.write(b.csv);
+                written += b.records.size();
+                for (boolean inj : b.injected) {
+                    if (inj)
+                        injectedCount++;
+                }
+                lastReport = progress(begin, lastReport);
+            }
+        }
+    }
+
+    // Sleeps until the arrival schedule reaches event number `index`.
+    private void pace(long begin, long index) throws InterruptedException {
+        if (config.rate <= 0)
+            return;
+        long due = begin + (long) (index / config.rate * 1e9);
+        long wait = due - System.nanoTime();
+        if (wait > 0)
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+    }
+
+    private long progress(long begin, long lastReport) {
+        long now = System.nanoTime();
+        if (now - lastReport < 1_000_000_000L)
+            return lastReport;
+        System.out.printf("  %,d / %,d written (%,.0f tx/s)%n", written, config.count, written / ((now - begin) / 1e9));
+        return now;
+    }
+
+    // Customers and vendors referenced by the workload exist, so joins and category lookups work.
+    private void ensureReferenceRows() throws SQLException {
+        try (ConnectionPool.PooledConnection pc = DatabaseManager.pool().acquireWrite()) {
+            pc.raw().setAutoCommit(false);
+            PreparedStatement customer = pc.prepare("INSERT OR IGNORE INTO customers (customer_id, name, location) VALUES (?, ?, ?)");
+            for (int id = 1; id <= config.customers; id++) {
+                customer.setInt(1, id);
+                customer.setString(2, "Customer " + id);
+                customer.setString(3, LOCATIONS[id % LOCATIONS.length]);
+                customer.addBatch();
+                if (id % 10000 == 0)
+                    customer.executeBatch();
+            }
+            customer.executeBatch();
+            PreparedStatement vendor = pc.prepare("INSERT OR IGNORE INTO vendors (vendor_id, name, category) VALUES (?, ?, ?)");
+            for (int id = 1; id <= config.vendors; id++) {
+                vendor.setInt(1, id);
+                vendor.setString(2, "Vendor " + id);
+                vendor.setString(3, CATEGORIES[id % CATEGORIES.length]);
+                vendor.addBatch();
+            }
+            vendor.executeBatch();
+            pc.raw().commit();
+            pc.raw().setAutoCommit(true);
+        }
+    }
+
+    // Cumulative distribution over customer ranks with P(rank r) proportional to 1 / r^s.
+    private static double[] zipfCdf(int n, double s) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int r = 0; r < n; r++) {
+            sum += 1.0 / Math.pow(r + 1, s);
+            cdf[r] = sum;
+        }
+        for (int r = 0; r < n; r++)
+            cdf[r] /= sum;
+        return cdf;
+    }
+
+    private int zipfRank(double u) {
+        int lo = 0, hi = zipfCdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (zipfCdf[mid] < u)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private static double gaussian(SplittableRandom rnd) {
+        // Box-Muller; SplittableRandom has no nextGaussian on Java 17.
+        double u = 1 - rnd.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * rnd.nextDouble());
+    }
+
+    // SplitMix64 finalizer over (seed, stream) so neighbouring blocks get unrelated generators.
+    private static long mix(long seed, long stream) {
+        long z = seed + 0x9E3779B97F4A7C15L * (stream + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
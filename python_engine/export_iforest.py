@@ -0,0 +1,62 @@
+"""Fits the Isolation Forest exactly as train_and_predict_ml does and exports it for the Java scorer.
+
+The output JSON holds the fitted trees (sklearn's tree_ arrays), offset_ and max_samples_, plus the
+feature rows and sklearn's score_samples / decision_function for them, so
+`java -cp target/benchmarks.jar src.IsolationForestCheck <file>` (run in java_app/benchmarks) can
+compare the Java implementation against sklearn on the same data.
+
+Usage: python export_iforest.py [output.json]
+"""
+import json
+import sys
+
+import pandas as pd
+from sklearn.ensemble import IsolationForest
+
+import risk_engine
+
+
+def main():
+    out = sys.argv[1] if len(sys.argv) > 1 else "iforest_export.json"
+    conn = risk_engine.create_connection()
+    if not conn:
+        return
+    df = risk_engine.fetch_data(conn)
+    conn.close()
+
+    # Same features and parameters as train_and_predict_ml
+    df['timestamp'] = pd.to_datetime(df['timestamp'])
+    df['hour'] = df['timestamp'].dt.hour
+    features = df[['amount', 'hour']]
+    model = IsolationForest(contamination=0.05, random_state=42)
+    model.fit(features)
+
+    # With the default max_features=1.0 every tree sees all columns in order, so tree_.feature
+    # indexes the rows directly.
+    trees = []
+    for est in model.estimators_:
+        t = est.tree_
+        trees.append({
+            "children_left": t.children_left.tolist(),
+            "children_right": t.children_right.tolist(),
+            "feature": t.feature.tolist(),
+            "threshold": t.threshold.tolist(),
+            "n_node_samples": t.n_node_samples.tolist(),
+        })
+
+    export = {
+        "max_samples": int(model.max_samples_),
+        "offset": float(model.offset_),
+        "contamination": 0.05,
+        "trees": trees,
+        "rows": features.astype(float).values.tolist(),
+        "score_samples": model.score_samples(features).tolist(),
+        "decision_function": model.decision_function(features).tolist(),
+    }
+    with open(out, "w") as f:
+        json.dump(export, f)
+    print(f"Exported {len(trees)} trees and {len(features)} scored rows to {out}")
+
+
+if __name__ == "__main__":
+    main()
@@ -9,15 +9,62 @@ document.addEventListener('DOMContentLoaded', () => {
     }
     fetchStats();
     fetchTransactions();
+    connectLiveUpdates();
 
+    // Resync when live updates are switched back on
+    document.getElementById('setting-refresh')?.addEventListener('change', () => {
+        if (refreshEnabled()) {
+            fetchStats();
+            fetchTransactions();
+        }
+    });
+});
+
+function refreshEnabled() {
+    return document.getElementById('setting-refresh')?.checked ?? true;
+}
+
+// ---------------- LIVE UPDATES (SSE) ----------------
+// The server pushes newly scored transactions and stat deltas; polling is only a fallback.
+function connectLiveUpdates() {
+    if (!window.EventSource) {
+        startPolling();
+        return;
+    }
+
+    const source = new EventSource(`${API_BASE}/stream`);
+    const resync = () => {
+        if (refreshEnabled()) {
+            fetchStats();
+            fetchTransactions();
+        }
+    };
+
+    // Every open, the first included: anything committed before the stream was registered
+    // (or while we were away) was never pushed to us.
+    source.addEventListener('open', resync);
+    // The server's data changed outside the live feed (rebuild, rescore, another writer).
+    source.addEventListener('resync', resync);
+
+    source.addEventListener('transactions', (e) => {
+        if (!refreshEnabled()) return;
+        mergeTransactions(JSON.parse(e.data));
+    });
+
+    source.addEventListener('stats', (e) => {
+        if (!refreshEnabled()) return;
+        applyStatsDelta(JSON.parse(e.data));
+    });
+}
+
+function startPolling() {
     setInterval(() => {
-        const refreshEnabled = document.getElementById('setting-refresh')?.checked ?? true;
-        if (refreshEnabled) {
+        if (refreshEnabled()) {
             fetchStats();
             fetchTransactions();
         }
     }, 5000);
-});
+}
 
 // ---------------- NAVIGATION ----------------
 function setupNavigation() {
@@ -70,8 +117,32 @@ async function fetchStats() {
     }
 }
 
+function applyStatsDelta(delta) {
+    Object.entries(delta).forEach(([level, count]) => {
+        const el = document.getElementById(`stat-${level.toLowerCase()}`);
+        if (el) el.innerText = (parseInt(el.innerText, 10) || 0) + count;
+    });
+}
+
 let globalTransactions = [];
 
+// Same ordering and window size as /api/transactions (timestamp DESC, id DESC, newest 100)
+function mergeTransactions(rows) {
+    const byId = new Map(globalTransactions.map(t => [t.id, t]));
+    rows.forEach(t => byId.set(t.id, t));
+
+    const merged = [...byId.values()]
+        .sort((a, b) => (b.timestamp || '').localeCompare(a.timestamp || '') || b.id - a.id)
+        .slice(0, 100);
+
+    globalTransactions = merged;
+    lastTxCount = -1; // force the transactions view to re-render
+    renderDashboardTable(merged);
+    renderCharts(merged);
+    renderTransactionsView(merged);
+    renderAlertsView(merged);
+}
+
 async function fetchTransactions() {
     try {
         const res = await fetch(`${API_BASE}/transactions`);